@@ -2,54 +2,119 @@ package ru.practicum.shareit.booking;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingRequestDto;
 import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.exeptions.ValidationException;
+import ru.practicum.shareit.fields.FieldSet;
+import ru.practicum.shareit.fields.SparseFields;
+import ru.practicum.shareit.idempotency.IdempotencyService;
+import ru.practicum.shareit.sharding.ShardRouter;
+import ru.practicum.shareit.user.service.UserService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.util.List;
 
+import static ru.practicum.shareit.idempotency.IdempotencyService.IDEMPOTENCY_KEY_HEADER;
+
 
 @RestController
 @RequestMapping(path = "/bookings")
 @RequiredArgsConstructor
 public class BookingController {
     private final BookingService bookingService;
+    private final IdempotencyService idempotencyService;
+    private final ShardRouter shardRouter;
+    private final UserService userService;
     private static final String USER_ID_HEADER = "X-Sharer-User-Id";
 
     @PostMapping
     public BookingDto createBooking(@Valid @RequestBody BookingRequestDto bookingRequestDto,
-                                    @RequestHeader(USER_ID_HEADER) Long bookerId) {
-        return bookingService.createBooking(bookingRequestDto, bookerId);
+                                    @RequestHeader(USER_ID_HEADER) Long bookerId,
+                                    @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false)
+                                    String idempotencyKey) {
+        return idempotencyService.execute("createBooking", bookerId, idempotencyKey, bookingRequestDto,
+                BookingDto.class,
+                () -> shardRouter.onShardOf(bookingRequestDto.getItemId(),
+                        () -> bookingService.createBooking(bookingRequestDto, bookerId)));
     }
 
     @PatchMapping("/{bookingId}")
     public BookingDto approveBooking(@PathVariable Long bookingId,
                                      @RequestParam Boolean approved,
                                      @RequestHeader(USER_ID_HEADER) Long ownerId) {
-        return bookingService.approveBooking(bookingId, approved, ownerId);
+        return shardRouter.onShardOf(bookingId, () -> bookingService.approveBooking(bookingId, approved, ownerId));
+    }
+
+    @GetMapping("/owner/export")
+    public ResponseEntity<StreamingResponseBody> exportOwnerBookings(
+            @RequestHeader(USER_ID_HEADER) Long ownerId,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        BookingExportFormat exportFormat = BookingExportFormat.parse(format);
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new ValidationException("Дата начала периода должна быть не позже даты окончания");
+        }
+        // Ошибку о несуществующем владельце нужно вернуть до начала выгрузки, пока статус ещё можно изменить.
+        userService.getUserById(ownerId);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("bookings-" + ownerId + "." + exportFormat.name().toLowerCase())
+                        .build().toString())
+                .body(outputStream -> shardRouter.onOwnerShard(ownerId, () -> {
+                    try {
+                        bookingService.exportOwnerBookings(ownerId, exportFormat, from, to, outputStream);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return null;
+                }));
     }
 
     @GetMapping("/{bookingId}")
     public BookingDto getBookingById(@PathVariable Long bookingId,
                                      @RequestHeader(USER_ID_HEADER) Long userId) {
-        return bookingService.getBookingById(bookingId, userId);
+        return shardRouter.onShardOf(bookingId, () -> bookingService.getBookingById(bookingId, userId));
+    }
+
+    @SparseFields
+    @GetMapping(params = "ids")
+    public List<BookingDto> getBookingsByIds(@RequestParam List<Long> ids,
+                                             @RequestHeader(USER_ID_HEADER) Long userId,
+                                             @RequestParam(required = false) String fields) {
+        return bookingService.getBookingsByIds(ids, userId, FieldSet.parse(fields));
     }
 
+    @SparseFields
     @GetMapping
     public List<BookingDto> getBookingsByBooker(@RequestParam(defaultValue = "ALL") String state,
                                                 @RequestHeader(USER_ID_HEADER) Long bookerId,
                                                 @RequestParam(defaultValue = "0") int from,
-                                                @RequestParam(defaultValue = "10") int size) {
-        return bookingService.getBookingsByBooker(state, bookerId, from, size);
+                                                @RequestParam(defaultValue = "10") int size,
+                                                @RequestParam(required = false) String fields) {
+        return bookingService.getBookingsByBooker(state, bookerId, from, size, FieldSet.parse(fields));
     }
 
+    @SparseFields
     @GetMapping("/owner")
     public List<BookingDto> getBookingsByOwner(@RequestParam(defaultValue = "ALL") String state,
                                                @RequestHeader(USER_ID_HEADER) Long ownerId,
                                                @RequestParam(defaultValue = "0") int from,
-                                               @RequestParam(defaultValue = "10") int size) {
-        return bookingService.getBookingsByOwner(state, ownerId, from, size);
+                                               @RequestParam(defaultValue = "10") int size,
+                                               @RequestParam(required = false) String fields) {
+        return shardRouter.onOwnerShard(ownerId,
+                () -> bookingService.getBookingsByOwner(state, ownerId, from, size, FieldSet.parse(fields)));
     }
 
 }
@@ -0,0 +1,27 @@
+package ru.practicum.shareit.booking;
+
+import ru.practicum.shareit.exeptions.ValidationException;
+
+public enum BookingExportFormat {
+    CSV("text/csv"),
+    NDJSON("application/x-ndjson");
+
+    private final String contentType;
+
+    BookingExportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public static BookingExportFormat parse(String format) {
+        for (BookingExportFormat value : values()) {
+            if (value.name().equalsIgnoreCase(format)) {
+                return value;
+            }
+        }
+        throw new ValidationException(String.format("Неизвестный формат выгрузки: %s", format));
+    }
+}
@@ -0,0 +1,49 @@
+package ru.practicum.shareit.booking.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import ru.practicum.shareit.booking.BookingStatus;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.model.User;
+
+import java.time.LocalDateTime;
+
+/**
+ * Завершённое бронирование, перенесённое из bookings архиватором.
+ * Идентификатор сохраняется прежним, внешних ключей у архивной таблицы нет.
+ */
+@Entity
+@Table(name = "bookings_archive", indexes = {
+        @Index(name = "idx_bookings_archive_booker", columnList = "booker_id, start_date"),
+        @Index(name = "idx_bookings_archive_item", columnList = "item_id, start_date")
+})
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ArchivedBooking {
+    @Id
+    Long id;
+
+    @Column(name = "start_date", nullable = false)
+    LocalDateTime start;
+
+    @Column(name = "end_date", nullable = false)
+    LocalDateTime end;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "item_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    Item item;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "booker_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    User booker;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    BookingStatus status;
+}
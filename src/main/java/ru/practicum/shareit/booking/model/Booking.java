@@ -13,7 +13,10 @@ import ru.practicum.shareit.user.model.User;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "bookings")
+@Table(name = "bookings", indexes = {
+        @Index(name = "idx_bookings_decided", columnList = "decided_at, id"),
+        @Index(name = "idx_bookings_item_start", columnList = "item_id, start_date")
+})
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -40,4 +43,11 @@ public class Booking {
     @Enumerated(EnumType.STRING)
     @Column(name = "status", nullable = false)
     BookingStatus status;
+
+    @Column(name = "decided_at")
+    LocalDateTime decidedAt;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    Long version;
 }
@@ -0,0 +1,46 @@
+package ru.practicum.shareit.booking.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Момент, когда у пользователя впервые завершилась подтверждённая аренда вещи.
+ * Строка появляется при подтверждении бронирования с датой его окончания, поэтому
+ * «аренда завершена» — это просто first_completed_at в прошлом.
+ */
+@Entity
+@Table(name = "completed_rentals",
+        indexes = @Index(name = "idx_completed_rentals_booker", columnList = "booker_id, first_completed_at"))
+@IdClass(CompletedRental.Key.class)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CompletedRental {
+    @Id
+    @Column(name = "booker_id")
+    Long bookerId;
+
+    @Id
+    @Column(name = "item_id")
+    Long itemId;
+
+    @Column(name = "first_completed_at", nullable = false)
+    LocalDateTime firstCompletedAt;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Key implements Serializable {
+        Long bookerId;
+        Long itemId;
+    }
+}
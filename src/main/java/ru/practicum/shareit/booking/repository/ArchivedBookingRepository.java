@@ -0,0 +1,26 @@
+package ru.practicum.shareit.booking.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import ru.practicum.shareit.booking.BookingStatus;
+import ru.practicum.shareit.booking.model.ArchivedBooking;
+
+import java.util.List;
+
+@Repository
+public interface ArchivedBookingRepository extends JpaRepository<ArchivedBooking, Long> {
+    boolean existsByBookerId(Long bookerId);
+
+    boolean existsByItemOwnerId(Long ownerId);
+
+    List<ArchivedBooking> findByBookerIdOrderByStartDesc(Long bookerId, Pageable pageable);
+
+    List<ArchivedBooking> findByItemOwnerIdOrderByStartDesc(Long ownerId, Pageable pageable);
+
+    List<ArchivedBooking> findByBookerIdAndStatusOrderByStartDesc(Long bookerId, BookingStatus status,
+                                                                  Pageable pageable);
+
+    List<ArchivedBooking> findByItemOwnerIdAndStatusOrderByStartDesc(Long ownerId, BookingStatus status,
+                                                                     Pageable pageable);
+}
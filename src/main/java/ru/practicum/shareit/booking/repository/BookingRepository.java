@@ -1,6 +1,7 @@
 package ru.practicum.shareit.booking.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import ru.practicum.shareit.booking.BookingStatus;
@@ -8,6 +9,7 @@ import ru.practicum.shareit.booking.model.Booking;
 import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -37,17 +39,29 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     @Query("select b from Booking b " +
             "where b.item.id = ?1 " +
             "and b.status = 'APPROVED' " +
-            "and b.start < ?2 " +
-            "order by b.start desc")
-    List<Booking> findLastBookingForItem(Long itemId, LocalDateTime now);
+            "and b.start > ?2 " +
+            "order by b.start, b.id")
+    List<Booking> findUpcomingForItem(Long itemId, LocalDateTime now, Pageable pageable);
 
     @Query("select b from Booking b " +
-            "where b.item.id = ?1 " +
+            "where b.item.id in ?1 " +
             "and b.status = 'APPROVED' " +
-            "and b.start > ?2 " +
-            "order by b.start ASC")
-    List<Booking> findNextBookingForItem(Long itemId, LocalDateTime now);
+            "and b.start = (select max(l.start) from Booking l " +
+            "where l.item = b.item and l.status = 'APPROVED' and l.start < ?2)")
+    List<Booking> findLastBookingsForItems(Collection<Long> itemIds, LocalDateTime now);
+
+    @Query("select b from Booking b " +
+            "where b.item.id in ?1 " +
+            "and b.status = 'APPROVED' " +
+            "and b.start = (select min(n.start) from Booking n " +
+            "where n.item = b.item and n.status = 'APPROVED' and n.start > ?2)")
+    List<Booking> findNextBookingsForItems(Collection<Long> itemIds, LocalDateTime now);
+
+    @Query("select b from Booking b join fetch b.item join fetch b.booker where b.id in ?1")
+    List<Booking> findWithItemAndBookerByIdIn(Collection<Long> ids);
 
-    List<Booking> findByItemIdAndBookerIdAndEndBeforeAndStatus(
-            Long itemId, Long bookerId, LocalDateTime end, BookingStatus status);
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Booking b set b.status = ?2, b.decidedAt = ?3, b.version = b.version + 1 " +
+            "where b.id = ?1 and b.status = 'WAITING'")
+    int updateStatusIfWaiting(Long bookingId, BookingStatus status, LocalDateTime decidedAt);
 }
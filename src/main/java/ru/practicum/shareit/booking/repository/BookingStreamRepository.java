@@ -0,0 +1,72 @@
+package ru.practicum.shareit.booking.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Читает всю историю бронирований вещей владельца, включая архив, однонаправленным курсором.
+ * Строки передаются обработчику по одной, без создания сущностей и списков.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BookingStreamRepository {
+    private static final String SELECT_OWNER_BOOKINGS = "select b.id, b.start_date, b.end_date, b.status, " +
+            "b.item_id, i.name as item_name, b.booker_id, u.name as booker_name " +
+            "from bookings b join items i on b.item_id = i.id join users u on b.booker_id = u.id " +
+            "where i.owner_id = ? and b.start_date >= ? and b.start_date < ? " +
+            "union all " +
+            "select b.id, b.start_date, b.end_date, b.status, " +
+            "b.item_id, i.name as item_name, b.booker_id, u.name as booker_name " +
+            "from bookings_archive b join items i on b.item_id = i.id join users u on b.booker_id = u.id " +
+            "where i.owner_id = ? and b.start_date >= ? and b.start_date < ? " +
+            "order by start_date, id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${shareit.bookings.export.fetch-size:1000}")
+    private int fetchSize;
+
+    public void forEachOwnerBooking(Long ownerId, LocalDateTime from, LocalDateTime to, BookingRowHandler handler) {
+        Timestamp start = Timestamp.valueOf(from);
+        Timestamp end = Timestamp.valueOf(to);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_OWNER_BOOKINGS,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            statement.setLong(1, ownerId);
+            statement.setTimestamp(2, start);
+            statement.setTimestamp(3, end);
+            statement.setLong(4, ownerId);
+            statement.setTimestamp(5, start);
+            statement.setTimestamp(6, end);
+            return statement;
+        }, rs -> {
+            try {
+                handler.handle(new BookingExportRow(rs.getLong("id"),
+                        rs.getTimestamp("start_date").toLocalDateTime(), rs.getTimestamp("end_date").toLocalDateTime(),
+                        rs.getString("status"), rs.getLong("item_id"), rs.getString("item_name"),
+                        rs.getLong("booker_id"), rs.getString("booker_name")));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    public record BookingExportRow(long id, LocalDateTime start, LocalDateTime end, String status, long itemId,
+                                   String itemName, long bookerId, String bookerName) {
+    }
+
+    @FunctionalInterface
+    public interface BookingRowHandler {
+        void handle(BookingExportRow row) throws IOException;
+    }
+}
@@ -0,0 +1,37 @@
+package ru.practicum.shareit.booking.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.model.CompletedRental;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface CompletedRentalRepository extends JpaRepository<CompletedRental, CompletedRental.Key> {
+    boolean existsByBookerIdAndItemIdAndFirstCompletedAtBefore(Long bookerId, Long itemId, LocalDateTime now);
+
+    List<CompletedRental> findByBookerIdAndFirstCompletedAtBeforeOrderByFirstCompletedAtDesc(
+            Long bookerId, LocalDateTime now, Pageable pageable);
+
+    @Modifying
+    @Query(value = "insert into completed_rentals (booker_id, item_id, first_completed_at) values (?1, ?2, ?3) " +
+            "on conflict (booker_id, item_id) do update set first_completed_at = " +
+            "least(completed_rentals.first_completed_at, excluded.first_completed_at)", nativeQuery = true)
+    void recordApproved(Long bookerId, Long itemId, LocalDateTime end);
+
+    @Transactional
+    @Modifying
+    @Query(value = "insert into completed_rentals (booker_id, item_id, first_completed_at) " +
+            "select booker_id, item_id, min(end_date) from (" +
+            "select booker_id, item_id, end_date from bookings where status = 'APPROVED' " +
+            "union all select booker_id, item_id, end_date from bookings_archive where status = 'APPROVED') b " +
+            "group by booker_id, item_id " +
+            "on conflict (booker_id, item_id) do update set first_completed_at = excluded.first_completed_at",
+            nativeQuery = true)
+    int rebuild();
+}
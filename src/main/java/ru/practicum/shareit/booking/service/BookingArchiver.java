@@ -0,0 +1,87 @@
+package ru.practicum.shareit.booking.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.scheduling.JobLeaseRepository;
+import ru.practicum.shareit.sharding.ShardRouter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Переносит бронирования, завершившиеся раньше заданного горизонта, из bookings в bookings_archive.
+ * Каждая пачка переносится в своей транзакции, так что основная таблица остаётся небольшой
+ * и не блокируется надолго. Бронирования в статусе WAITING не переносятся: их сначала закрывает
+ * WaitingBookingSweeper. Аренда задачи не даёт двум узлам переносить одни и те же строки одновременно.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BookingArchiver {
+    private static final String JOB_NAME = "booking-archiver";
+    private static final String SELECT_EXPIRED =
+            "select id from bookings where end_date < :horizon and status <> 'WAITING' order by id limit :limit";
+    private static final String COPY_TO_ARCHIVE =
+            "insert into bookings_archive (id, start_date, end_date, item_id, booker_id, status) " +
+            "select id, start_date, end_date, item_id, booker_id, status from bookings where id in (:ids)";
+    private static final String DELETE_FROM_HOT = "delete from bookings where id in (:ids)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final JobLeaseRepository jobLeaseRepository;
+
+    @Value("${shareit.bookings.archive.horizon-days:365}")
+    private long horizonDays;
+
+    @Value("${shareit.bookings.archive.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${shareit.bookings.archive.lease:PT30M}")
+    private Duration lease;
+
+    @Scheduled(cron = "${shareit.bookings.archive.cron:0 30 3 * * *}")
+    public void archiveCompletedBookings() {
+        shardRouter.forEachShard(this::archiveOnCurrentShard);
+    }
+
+    private void archiveOnCurrentShard() {
+        if (!jobLeaseRepository.tryAcquire(JOB_NAME, lease)) {
+            return;
+        }
+        try {
+            LocalDateTime horizon = LocalDateTime.now().minusDays(horizonDays);
+            long archived = 0;
+            int moved;
+            do {
+                moved = transactionTemplate.execute(status -> moveBatch(horizon));
+                archived += moved;
+            } while (moved == batchSize);
+
+            if (archived > 0) {
+                log.info("В архив перенесено {} бронирований, завершившихся до {}", archived, horizon);
+            }
+        } finally {
+            jobLeaseRepository.release(JOB_NAME);
+        }
+    }
+
+    private int moveBatch(LocalDateTime horizon) {
+        List<Long> ids = jdbcTemplate.queryForList(SELECT_EXPIRED,
+                new MapSqlParameterSource("horizon", horizon).addValue("limit", batchSize), Long.class);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+        jdbcTemplate.update(COPY_TO_ARCHIVE, params);
+        jdbcTemplate.update(DELETE_FROM_HOT, params);
+        return ids.size();
+    }
+}
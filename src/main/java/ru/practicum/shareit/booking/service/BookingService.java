@@ -1,8 +1,13 @@
 package ru.practicum.shareit.booking.service;
 
+import ru.practicum.shareit.booking.BookingExportFormat;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingRequestDto;
+import ru.practicum.shareit.fields.FieldSet;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
 import java.util.List;
 
 public interface BookingService {
@@ -12,7 +17,12 @@ public interface BookingService {
 
     BookingDto getBookingById(Long bookingId, Long userId);
 
-    List<BookingDto> getBookingsByBooker(String state, Long bookerId, int from, int size);
+    List<BookingDto> getBookingsByIds(List<Long> ids, Long userId, FieldSet fields);
 
-    List<BookingDto> getBookingsByOwner(String state, Long ownerId, int from, int size);
+    List<BookingDto> getBookingsByBooker(String state, Long bookerId, int from, int size, FieldSet fields);
+
+    List<BookingDto> getBookingsByOwner(String state, Long ownerId, int from, int size, FieldSet fields);
+
+    void exportOwnerBookings(Long ownerId, BookingExportFormat format, LocalDate from, LocalDate to,
+                             OutputStream outputStream) throws IOException;
 }
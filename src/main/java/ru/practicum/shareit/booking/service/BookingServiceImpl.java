@@ -1,45 +1,82 @@
 package ru.practicum.shareit.booking.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.BookingExportFormat;
 import ru.practicum.shareit.booking.BookingStatus;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingRequestDto;
+import ru.practicum.shareit.booking.model.ArchivedBooking;
 import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.repository.ArchivedBookingRepository;
 import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.repository.BookingStreamRepository;
+import ru.practicum.shareit.booking.repository.CompletedRentalRepository;
 import ru.practicum.shareit.exeptions.ForbiddenException;
 import ru.practicum.shareit.exeptions.NotFoundException;
 import ru.practicum.shareit.exeptions.ValidationException;
+import ru.practicum.shareit.fields.FieldSet;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.service.ItemViewCoalescer;
+import ru.practicum.shareit.item.service.PopularItemsTracker;
+import ru.practicum.shareit.sharding.ShardRouter;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
 import org.springframework.data.domain.Pageable;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class BookingServiceImpl implements BookingService {
+    private static final int MAX_BATCH_IDS = 500;
+    private static final LocalDateTime EXPORT_MIN_DATE = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime EXPORT_MAX_DATE = LocalDateTime.of(9999, 1, 1, 0, 0);
+
     private final BookingRepository bookingRepository;
     private final UserRepository userRepository;
     private final ItemRepository itemRepository;
+    private final ArchivedBookingRepository archivedBookingRepository;
+    private final CompletedRentalRepository completedRentalRepository;
+    private final PopularItemsTracker popularItemsTracker;
+    private final ItemViewCoalescer itemViewCoalescer;
+    private final ItemBookingTimeline itemBookingTimeline;
+    private final ShardRouter shardRouter;
+    private final BookingStreamRepository bookingStreamRepository;
+    private final ObjectMapper objectMapper;
 
     @Override
     @Transactional
     public BookingDto createBooking(BookingRequestDto bookingRequestDto, Long bookerId) {
-        User booker = userRepository.findById(bookerId)
+        User booker = userRepository.findByIdAndDeletedFalse(bookerId)
                 .orElseThrow(() -> new NotFoundException(String.format("Пользователь с Id %d не найден", bookerId)));
 
-        Item item = itemRepository.findById(bookingRequestDto.getItemId())
+        Item item = itemRepository.findByIdAndOwnerDeletedFalse(bookingRequestDto.getItemId())
                 .orElseThrow(() -> new NotFoundException(String.format("Вещь с Id %d не найдена", bookingRequestDto.getItemId())));
 
         if (!item.getAvailable()) {
@@ -71,6 +108,7 @@ public class BookingServiceImpl implements BookingService {
         booking.setStatus(BookingStatus.WAITING);
 
         Booking savedBooking = bookingRepository.save(booking);
+        itemBookingTimeline.invalidate(item.getId());
         return convertToDto(savedBooking);
     }
 
@@ -88,12 +126,26 @@ public class BookingServiceImpl implements BookingService {
             throw new ValidationException("Бронирование уже обработано");
         }
 
-        booking.setStatus(approved ? BookingStatus.APPROVED : BookingStatus.REJECTED);
-        Booking updatedBooking = bookingRepository.save(booking);
+        // Переход выполняется условным UPDATE: из двух одновременных решений применится только одно.
+        BookingStatus newStatus = approved ? BookingStatus.APPROVED : BookingStatus.REJECTED;
+        if (bookingRepository.updateStatusIfWaiting(bookingId, newStatus, LocalDateTime.now()) == 0) {
+            throw new ValidationException("Бронирование уже обработано");
+        }
+        itemBookingTimeline.invalidate(booking.getItem().getId());
+        if (approved) {
+            completedRentalRepository.recordApproved(
+                    booking.getBooker().getId(), booking.getItem().getId(), booking.getEnd());
+            popularItemsTracker.recordBooking(booking.getItem().getId());
+            itemViewCoalescer.invalidate(booking.getItem().getId());
+        }
+
+        Booking updatedBooking = bookingRepository.findById(bookingId)
+                .orElseThrow(() -> new NotFoundException(String.format("Бронирование с Id %d не найдено", bookingId)));
         return convertToDto(updatedBooking);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public BookingDto getBookingById(Long bookingId, Long userId) {
         Booking booking = bookingRepository.findById(bookingId)
                 .orElseThrow(() -> new NotFoundException(String.format("Бронирование с Id %d не найдено", bookingId)));
@@ -106,84 +158,279 @@ public class BookingServiceImpl implements BookingService {
     }
 
     @Override
-    public List<BookingDto> getBookingsByBooker(String state, Long bookerId, int from, int size) {
-        userRepository.findById(bookerId)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<BookingDto> getBookingsByIds(List<Long> ids, Long userId, FieldSet fields) {
+        if (ids.size() > MAX_BATCH_IDS) {
+            throw new ValidationException(
+                    String.format("За один запрос можно получить не более %d бронирований", MAX_BATCH_IDS));
+        }
+        // Как и при запросе по одному id, чужие бронирования не отличаются от несуществующих и пропускаются.
+        Map<Long, BookingDto> byId = shardRouter.queryShardsOf(new LinkedHashSet<>(ids),
+                        shardIds -> bookingRepository.findWithItemAndBookerByIdIn(shardIds).stream()
+                                .filter(booking -> booking.getBooker().getId().equals(userId)
+                                        || booking.getItem().getOwner().getId().equals(userId))
+                                .map(booking -> convertToDto(booking, fields))
+                                .collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(BookingDto::getId, dto -> dto));
+        return ids.stream()
+                .distinct()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<BookingDto> getBookingsByBooker(String state, Long bookerId, int from, int size,
+                                                FieldSet fields) {
+        userRepository.findByIdAndDeletedFalse(bookerId)
                 .orElseThrow(() -> new NotFoundException(String.format("Пользователь с Id %d не найден", bookerId)));
 
-        Pageable pageable = PageRequest.of(from / size, size, Sort.by(Sort.Direction.DESC, "start"));
+        if (shardRouter.shardCount() == 1) {
+            return shardRouter.queryAllShards(() -> findBookerBookings(state, bookerId, from, size, fields));
+        }
+        // Бронирования пользователя лежат на шардах владельцев вещей: каждый шард отдаёт первые
+        // from + size строк, после чего они сливаются по дате начала.
+        return shardRouter.queryAllShards(() -> findBookerBookings(state, bookerId, 0, from + size, fields)).stream()
+                .sorted(Comparator.comparing(BookingDto::getStart).reversed())
+                .skip(from)
+                .limit(size)
+                .collect(Collectors.toList());
+    }
+
+    private List<BookingDto> findBookerBookings(String state, Long bookerId, int from, int size,
+                                                FieldSet fields) {
+        Pageable pageable = OffsetPageRequest.of(from, size, Sort.by(Sort.Direction.DESC, "start"));
         LocalDateTime now = LocalDateTime.now();
 
         switch (state.toUpperCase()) {
             case "ALL":
+                if (archivedBookingRepository.existsByBookerId(bookerId)) {
+                    Pageable head = headPage(from, size);
+                    return mergeWithArchive(bookingRepository.findByBookerIdOrderByStartDesc(bookerId, head),
+                            archivedBookingRepository.findByBookerIdOrderByStartDesc(bookerId, head),
+                            from, size, fields);
+                }
                 return bookingRepository.findByBookerIdOrderByStartDesc(bookerId, pageable)
-                        .stream().map(this::convertToDto).collect(Collectors.toList());
+                        .stream().map(booking -> convertToDto(booking, fields)).collect(Collectors.toList());
             case "CURRENT":
                 return bookingRepository.findByBookerIdAndStartBeforeAndEndAfterOrderByStartDesc(
                                 bookerId, now, now, pageable)
-                        .stream().map(this::convertToDto).collect(Collectors.toList());
+                        .stream().map(booking -> convertToDto(booking, fields)).collect(Collectors.toList());
             case "PAST":
+                if (archivedBookingRepository.existsByBookerId(bookerId)) {
+                    Pageable head = headPage(from, size);
+                    return mergeWithArchive(
+                            bookingRepository.findByBookerIdAndEndBeforeOrderByStartDesc(bookerId, now, head),
+                            archivedBookingRepository.findByBookerIdOrderByStartDesc(bookerId, head), from, size,
+                            fields);
+                }
                 return bookingRepository.findByBookerIdAndEndBeforeOrderByStartDesc(bookerId, now, pageable)
-                        .stream().map(this::convertToDto).collect(Collectors.toList());
+                        .stream().map(booking -> convertToDto(booking, fields)).collect(Collectors.toList());
             case "FUTURE":
                 return bookingRepository.findByBookerIdAndStartAfterOrderByStartDesc(bookerId, now, pageable)
-                        .stream().map(this::convertToDto).collect(Collectors.toList());
+                        .stream().map(booking -> convertToDto(booking, fields)).collect(Collectors.toList());
             case "WAITING":
                 return bookingRepository.findByBookerIdAndStatusOrderByStartDesc(
                                 bookerId, BookingStatus.WAITING, pageable)
-                        .stream().map(this::convertToDto).collect(Collectors.toList());
+                        .stream().map(booking -> convertToDto(booking, fields)).collect(Collectors.toList());
             case "REJECTED":
+                if (archivedBookingRepository.existsByBookerId(bookerId)) {
+                    Pageable head = headPage(from, size);
+                    return mergeWithArchive(
+                            bookingRepository.findByBookerIdAndStatusOrderByStartDesc(
+                                    bookerId, BookingStatus.REJECTED, head),
+                            archivedBookingRepository.findByBookerIdAndStatusOrderByStartDesc(
+                                    bookerId, BookingStatus.REJECTED, head),
+                            from, size, fields);
+                }
                 return bookingRepository.findByBookerIdAndStatusOrderByStartDesc(
                                 bookerId, BookingStatus.REJECTED, pageable)
-                        .stream().map(this::convertToDto).collect(Collectors.toList());
+                        .stream().map(booking -> convertToDto(booking, fields)).collect(Collectors.toList());
             default:
                 throw new ValidationException(String.format("Unknown state %s", state));
         }
     }
 
     @Override
-    public List<BookingDto> getBookingsByOwner(String state, Long ownerId, int from, int size) {
-        userRepository.findById(ownerId)
+    @Transactional(readOnly = true)
+    public List<BookingDto> getBookingsByOwner(String state, Long ownerId, int from, int size,
+                                               FieldSet fields) {
+        userRepository.findByIdAndDeletedFalse(ownerId)
                 .orElseThrow(() -> new NotFoundException(String.format("Пользователь с Id %d не найден", ownerId)));
 
-        Pageable pageable = PageRequest.of(from / size, size, Sort.by(Sort.Direction.DESC, "start"));
+        Pageable pageable = OffsetPageRequest.of(from, size, Sort.by(Sort.Direction.DESC, "start"));
         LocalDateTime now = LocalDateTime.now();
 
         switch (state.toUpperCase()) {
             case "ALL":
+                if (archivedBookingRepository.existsByItemOwnerId(ownerId)) {
+                    Pageable head = headPage(from, size);
+                    return mergeWithArchive(bookingRepository.findByItemOwnerIdOrderByStartDesc(ownerId, head),
+                            archivedBookingRepository.findByItemOwnerIdOrderByStartDesc(ownerId, head),
+                            from, size, fields);
+                }
                 return bookingRepository.findByItemOwnerIdOrderByStartDesc(ownerId, pageable)
-                        .stream().map(this::convertToDto).collect(Collectors.toList());
+                        .stream().map(booking -> convertToDto(booking, fields)).collect(Collectors.toList());
             case "CURRENT":
                 return bookingRepository.findByItemOwnerIdAndStartBeforeAndEndAfterOrderByStartDesc(
                                 ownerId, now, now, pageable)
-                        .stream().map(this::convertToDto).collect(Collectors.toList());
+                        .stream().map(booking -> convertToDto(booking, fields)).collect(Collectors.toList());
             case "PAST":
+                if (archivedBookingRepository.existsByItemOwnerId(ownerId)) {
+                    Pageable head = headPage(from, size);
+                    return mergeWithArchive(
+                            bookingRepository.findByItemOwnerIdAndEndBeforeOrderByStartDesc(ownerId, now, head),
+                            archivedBookingRepository.findByItemOwnerIdOrderByStartDesc(ownerId, head), from, size,
+                            fields);
+                }
                 return bookingRepository.findByItemOwnerIdAndEndBeforeOrderByStartDesc(ownerId, now, pageable)
-                        .stream().map(this::convertToDto).collect(Collectors.toList());
+                        .stream().map(booking -> convertToDto(booking, fields)).collect(Collectors.toList());
             case "FUTURE":
                 return bookingRepository.findByItemOwnerIdAndStartAfterOrderByStartDesc(ownerId, now, pageable)
-                        .stream().map(this::convertToDto).collect(Collectors.toList());
+                        .stream().map(booking -> convertToDto(booking, fields)).collect(Collectors.toList());
             case "WAITING":
                 return bookingRepository.findByItemOwnerIdAndStatusOrderByStartDesc(
                                 ownerId, BookingStatus.WAITING, pageable)
-                        .stream().map(this::convertToDto).collect(Collectors.toList());
+                        .stream().map(booking -> convertToDto(booking, fields)).collect(Collectors.toList());
             case "REJECTED":
+                if (archivedBookingRepository.existsByItemOwnerId(ownerId)) {
+                    Pageable head = headPage(from, size);
+                    return mergeWithArchive(
+                            bookingRepository.findByItemOwnerIdAndStatusOrderByStartDesc(
+                                    ownerId, BookingStatus.REJECTED, head),
+                            archivedBookingRepository.findByItemOwnerIdAndStatusOrderByStartDesc(
+                                    ownerId, BookingStatus.REJECTED, head),
+                            from, size, fields);
+                }
                 return bookingRepository.findByItemOwnerIdAndStatusOrderByStartDesc(
                                 ownerId, BookingStatus.REJECTED, pageable)
-                        .stream().map(this::convertToDto).collect(Collectors.toList());
+                        .stream().map(booking -> convertToDto(booking, fields)).collect(Collectors.toList());
             default:
                 throw new ValidationException("Unknown state: " + state);
         }
     }
 
+    // Строки пишутся в поток по мере чтения курсора, поэтому память не зависит от размера истории.
+    @Override
+    @Transactional(readOnly = true)
+    public void exportOwnerBookings(Long ownerId, BookingExportFormat format, LocalDate from, LocalDate to,
+                                    OutputStream outputStream) throws IOException {
+        LocalDateTime start = from != null ? from.atStartOfDay() : EXPORT_MIN_DATE;
+        LocalDateTime end = to != null ? to.plusDays(1).atStartOfDay() : EXPORT_MAX_DATE;
+        try {
+            if (format == BookingExportFormat.CSV) {
+                exportCsv(ownerId, start, end, outputStream);
+            } else {
+                exportNdjson(ownerId, start, end, outputStream);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void exportCsv(Long ownerId, LocalDateTime start, LocalDateTime end, OutputStream outputStream)
+            throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writer.write("id,start,end,status,item_id,item_name,booker_id,booker_name\n");
+        bookingStreamRepository.forEachOwnerBooking(ownerId, start, end, row -> {
+            writer.write(row.id() + "," + row.start() + "," + row.end() + "," + row.status() + ","
+                    + row.itemId() + "," + csvField(row.itemName()) + ","
+                    + row.bookerId() + "," + csvField(row.bookerName()) + "\n");
+        });
+        writer.flush();
+    }
+
+    private void exportNdjson(Long ownerId, LocalDateTime start, LocalDateTime end, OutputStream outputStream)
+            throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Строки разделяются только переводом строки, без пробела между корневыми значениями.
+            generator.setRootValueSeparator(null);
+            bookingStreamRepository.forEachOwnerBooking(ownerId, start, end, row -> {
+                generator.writeStartObject();
+                generator.writeNumberField("id", row.id());
+                generator.writeStringField("start", row.start().toString());
+                generator.writeStringField("end", row.end().toString());
+                generator.writeStringField("status", row.status());
+                generator.writeNumberField("itemId", row.itemId());
+                generator.writeStringField("itemName", row.itemName());
+                generator.writeNumberField("bookerId", row.bookerId());
+                generator.writeStringField("bookerName", row.bookerName());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            });
+        }
+    }
+
+    private String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private Pageable headPage(int from, int size) {
+        return PageRequest.of(0, from + size, Sort.by(Sort.Direction.DESC, "start"));
+    }
+
+    // В архиве только завершённые бронирования без WAITING, поэтому для CURRENT, FUTURE и WAITING
+    // архив не читается. Архивные бронирования не пересекаются с оперативными по id, поэтому достаточно
+    // взять первые from + size строк из каждого источника и слить их по дате начала.
+    private List<BookingDto> mergeWithArchive(List<Booking> hot, List<ArchivedBooking> archived, int from, int size,
+                                              FieldSet fields) {
+        return Stream.concat(hot.stream().map(booking -> convertToDto(booking, fields)),
+                        archived.stream().map(booking -> convertArchivedToDto(booking, fields)))
+                .sorted(Comparator.comparing(BookingDto::getStart).reversed())
+                .skip(from)
+                .limit(size)
+                .collect(Collectors.toList());
+    }
+
+    private BookingDto convertArchivedToDto(ArchivedBooking booking, FieldSet fields) {
+        Booking restored = new Booking();
+        restored.setId(booking.getId());
+        restored.setStart(booking.getStart());
+        restored.setEnd(booking.getEnd());
+        restored.setItem(booking.getItem());
+        restored.setBooker(booking.getBooker());
+        restored.setStatus(booking.getStatus());
+        return convertToDto(restored, fields);
+    }
+
     private BookingDto convertToDto(Booking booking) {
-        ItemDto itemDto = new ItemDto();
-        itemDto.setId(booking.getItem().getId());
-        itemDto.setName(booking.getItem().getName());
-
-        UserDto bookerDto = new UserDto();
-        bookerDto.setId(booking.getBooker().getId());
-        bookerDto.setName(booking.getBooker().getName());
-        bookerDto.setEmail(booking.getBooker().getEmail());
+        return convertToDto(booking, FieldSet.ALL);
+    }
+
+    // Id связанных сущностей берётся из прокси без загрузки, поэтому вещь и автор
+    // подгружаются только если запрошены их остальные поля.
+    private BookingDto convertToDto(Booking booking, FieldSet fields) {
+        ItemDto itemDto = null;
+        if (fields.includes("item")) {
+            FieldSet itemFields = fields.nested("item");
+            itemDto = new ItemDto();
+            itemDto.setId(booking.getItem().getId());
+            if (itemFields.includes("name")) {
+                itemDto.setName(booking.getItem().getName());
+            }
+        }
+
+        UserDto bookerDto = null;
+        if (fields.includes("booker")) {
+            FieldSet bookerFields = fields.nested("booker");
+            bookerDto = new UserDto();
+            bookerDto.setId(booking.getBooker().getId());
+            if (bookerFields.includes("name")) {
+                bookerDto.setName(booking.getBooker().getName());
+            }
+            if (bookerFields.includes("email")) {
+                bookerDto.setEmail(booking.getBooker().getEmail());
+            }
+        }
 
         return new BookingDto(
                 booking.getId(),
@@ -0,0 +1,35 @@
+package ru.practicum.shareit.booking.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.repository.CompletedRentalRepository;
+import ru.practicum.shareit.sharding.ShardRouter;
+
+/**
+ * Пересобирает completed_rentals по подтверждённым бронированиям, включая архивные.
+ * Запускается при старте приложения с аргументом --backfill-rentals.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CompletedRentalBackfillRunner implements ApplicationRunner {
+    public static final String BACKFILL_OPTION = "backfill-rentals";
+
+    private final CompletedRentalRepository completedRentalRepository;
+    private final ShardRouter shardRouter;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (args.containsOption(BACKFILL_OPTION)) {
+            rebuild();
+        }
+    }
+
+    public void rebuild() {
+        shardRouter.forEachShard(() ->
+                log.info("Индекс завершённых аренд пересобран: {} строк", completedRentalRepository.rebuild()));
+    }
+}
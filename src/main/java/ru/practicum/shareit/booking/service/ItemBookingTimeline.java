@@ -0,0 +1,292 @@
+package ru.practicum.shareit.booking.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.dto.ItemWithBookingsDto.BookingInfo;
+import ru.practicum.shareit.scheduling.HierarchicalTimingWheel;
+import ru.practicum.shareit.scheduling.HierarchicalTimingWheel.Timeout;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Последнее и ближайшие подтверждённые бронирования вещей для карточки владельца.
+ * Будущие бронирования вещи хранятся по возрастанию начала, и в момент начала ближайшего
+ * колесо таймеров переводит его в последнее, так что чтение не обращается к БД.
+ * Создание бронирования и решение владельца сбрасывают запись вещи после фиксации транзакции,
+ * а max-age ограничивает расхождение с изменениями в обход сервиса (архивация, удаление пользователей)
+ * и с изменениями на других узлах: кэш у каждого узла свой, и сброс до них не доходит.
+ * У каждой вещи не больше одного таймера: новый заменяет прежний, а сброс записи его отменяет.
+ */
+@Slf4j
+@Component
+public class ItemBookingTimeline {
+    private static final int UPCOMING_LIMIT = 16;
+    private static final int WHEEL_SIZE = 64;
+
+    private final BookingRepository bookingRepository;
+    private final HierarchicalTimingWheel wheel;
+    private final ConcurrentHashMap<Long, Timeline> timelines = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Timeout> timers = new ConcurrentHashMap<>();
+    private final Clock clock;
+    // Меняется при каждом сбросе: загрузка, начатая до записи, не попадает в кэш.
+    private final AtomicLong generation = new AtomicLong();
+    private final Duration maxAge;
+    private final int maxEntries;
+    private final Counter hits;
+    private final Counter misses;
+
+    @Autowired
+    public ItemBookingTimeline(BookingRepository bookingRepository, MeterRegistry meterRegistry,
+                               @Value("${shareit.items.booking-timeline.tick-ms:1000}") long tickMillis,
+                               @Value("${shareit.items.booking-timeline.max-age:PT30S}") Duration maxAge,
+                               @Value("${shareit.items.booking-timeline.max-entries:100000}") int maxEntries) {
+        this(bookingRepository, meterRegistry, Clock.systemDefaultZone(), tickMillis, maxAge, maxEntries);
+    }
+
+    ItemBookingTimeline(BookingRepository bookingRepository, MeterRegistry meterRegistry, Clock clock,
+                        long tickMillis, Duration maxAge, int maxEntries) {
+        this.bookingRepository = bookingRepository;
+        this.clock = clock;
+        this.wheel = new HierarchicalTimingWheel(tickMillis, WHEEL_SIZE, clock.millis());
+        this.maxAge = maxAge;
+        this.maxEntries = maxEntries;
+        this.hits = meterRegistry.counter("shareit.items.booking-timeline.requests", "result", "hit");
+        this.misses = meterRegistry.counter("shareit.items.booking-timeline.requests", "result", "miss");
+        meterRegistry.gauge("shareit.items.booking-timeline.entries", timelines, Map::size);
+        meterRegistry.gauge("shareit.items.booking-timeline.timers", wheel, HierarchicalTimingWheel::size);
+    }
+
+    public LastAndNext get(Long itemId) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        Timeline timeline = current(itemId, now);
+        if (timeline != null) {
+            hits.increment();
+            return timeline.view();
+        }
+
+        misses.increment();
+        long startedAt = generation.get();
+        List<Booking> last = bookingRepository.findLastBookingsForItems(List.of(itemId), now);
+        List<Booking> upcoming = bookingRepository.findUpcomingForItem(itemId, now,
+                PageRequest.of(0, UPCOMING_LIMIT + 1));
+        boolean complete = upcoming.size() <= UPCOMING_LIMIT;
+        timeline = new Timeline(toInfo(firstByItem(last).get(itemId)),
+                upcoming.stream().limit(UPCOMING_LIMIT).map(this::toInfo).collect(Collectors.toList()),
+                complete, clock.millis());
+        store(itemId, timeline, startedAt);
+        return timeline.view();
+    }
+
+    /**
+     * Пакетный вариант для списка вещей: недостающие записи загружаются двумя IN-запросами
+     * и хранят только ближайшее будущее бронирование.
+     */
+    public Map<Long, LastAndNext> get(Collection<Long> itemIds) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        Map<Long, LastAndNext> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long itemId : itemIds) {
+            Timeline timeline = current(itemId, now);
+            if (timeline != null) {
+                result.put(itemId, timeline.view());
+            } else {
+                missing.add(itemId);
+            }
+        }
+        hits.increment(result.size());
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        misses.increment(missing.size());
+        long startedAt = generation.get();
+        Map<Long, Booking> last = firstByItem(bookingRepository.findLastBookingsForItems(missing, now));
+        Map<Long, Booking> next = firstByItem(bookingRepository.findNextBookingsForItems(missing, now));
+        long loadedAt = clock.millis();
+        for (Long itemId : missing) {
+            Booking nextBooking = next.get(itemId);
+            Timeline timeline = new Timeline(toInfo(last.get(itemId)),
+                    nextBooking == null ? List.of() : List.of(toInfo(nextBooking)), nextBooking == null, loadedAt);
+            store(itemId, timeline, startedAt);
+            result.put(itemId, timeline.view());
+        }
+        return result;
+    }
+
+    /**
+     * Сбрасывает запись вещи после фиксации текущей транзакции.
+     */
+    public void invalidate(Long itemId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(itemId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(itemId);
+            }
+        });
+    }
+
+    @Scheduled(fixedRateString = "${shareit.items.booking-timeline.tick-ms:1000}")
+    public void tick() {
+        for (Runnable task : wheel.advance(clock.millis())) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.warn("Не удалось сдвинуть бронирования вещи по таймеру", e);
+            }
+        }
+    }
+
+    private void evict(Long itemId) {
+        generation.incrementAndGet();
+        timelines.remove(itemId);
+        cancelTimer(itemId);
+    }
+
+    // Возвращает актуальную на now запись или null, если её нужно загрузить заново.
+    private Timeline current(Long itemId, LocalDateTime now) {
+        Timeline cached = timelines.get(itemId);
+        if (cached == null) {
+            return null;
+        }
+        if (clock.millis() - cached.loadedAt > maxAge.toMillis()) {
+            if (timelines.remove(itemId, cached)) {
+                cancelTimer(itemId);
+            }
+            return null;
+        }
+        // Таймер срабатывает с точностью до тика, поэтому начавшиеся бронирования сдвигаются и при чтении.
+        Timeline advanced = cached.advance(now);
+        if (advanced == null) {
+            if (timelines.remove(itemId, cached)) {
+                cancelTimer(itemId);
+            }
+        } else if (advanced != cached && timelines.replace(itemId, cached, advanced)) {
+            schedule(itemId, advanced);
+        }
+        return advanced;
+    }
+
+    private void store(Long itemId, Timeline timeline, long startedAt) {
+        if (generation.get() != startedAt || (timelines.size() >= maxEntries && !timelines.containsKey(itemId))) {
+            return;
+        }
+        timelines.put(itemId, timeline);
+        schedule(itemId, timeline);
+    }
+
+    // Таймер с наступившим сроком колесо ставит на ближайший тик, поэтому schedule и promote
+    // не вызывают друг друга рекурсивно.
+    private void schedule(Long itemId, Timeline timeline) {
+        if (timeline.upcoming.isEmpty()) {
+            cancelTimer(itemId);
+            return;
+        }
+        long deadline = timeline.upcoming.get(0).getStart()
+                .atZone(clock.getZone()).toInstant().toEpochMilli() + 1;
+        Timeout previous = timers.put(itemId, wheel.schedule(deadline, () -> promote(itemId, timeline)));
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    private void cancelTimer(Long itemId) {
+        Timeout timeout = timers.remove(itemId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    private void promote(Long itemId, Timeline expected) {
+        if (timelines.get(itemId) != expected) {
+            return;
+        }
+        Timeline advanced = expected.advance(LocalDateTime.now(clock));
+        if (advanced == null) {
+            if (timelines.remove(itemId, expected)) {
+                cancelTimer(itemId);
+            }
+        } else if (advanced == expected) {
+            // Колесо срабатывает в начале тика, который может закончиться раньше начала бронирования.
+            schedule(itemId, expected);
+        } else if (timelines.replace(itemId, expected, advanced)) {
+            schedule(itemId, advanced);
+        }
+    }
+
+    // При совпадении даты начала у нескольких бронирований берётся бронирование с меньшим id.
+    private Map<Long, Booking> firstByItem(List<Booking> bookings) {
+        return bookings.stream()
+                .collect(Collectors.toMap(booking -> booking.getItem().getId(), booking -> booking,
+                        (first, second) -> first.getId() < second.getId() ? first : second));
+    }
+
+    private BookingInfo toInfo(Booking booking) {
+        if (booking == null) {
+            return null;
+        }
+        return new BookingInfo(booking.getId(), booking.getBooker().getId(), booking.getStart(), booking.getEnd());
+    }
+
+    public record LastAndNext(BookingInfo last, BookingInfo next) {
+    }
+
+    // Обычный класс, а не record: записи в кэше сравниваются по ссылке.
+    private static final class Timeline {
+        private final BookingInfo last;
+        private final List<BookingInfo> upcoming;
+        private final boolean complete;
+        private final long loadedAt;
+
+        Timeline(BookingInfo last, List<BookingInfo> upcoming, boolean complete, long loadedAt) {
+            this.last = last;
+            this.upcoming = upcoming;
+            this.complete = complete;
+            this.loadedAt = loadedAt;
+        }
+
+        LastAndNext view() {
+            return new LastAndNext(last, upcoming.isEmpty() ? null : upcoming.get(0));
+        }
+
+        // Переводит начавшиеся бронирования в последнее. null означает, что известные будущие
+        // бронирования закончились, а список был неполным и запись нужно загрузить заново.
+        Timeline advance(LocalDateTime now) {
+            int started = 0;
+            while (started < upcoming.size() && upcoming.get(started).getStart().isBefore(now)) {
+                started++;
+            }
+            if (started == 0) {
+                return this;
+            }
+            if (started == upcoming.size() && !complete) {
+                return null;
+            }
+            return new Timeline(upcoming.get(started - 1), List.copyOf(upcoming.subList(started, upcoming.size())),
+                    complete, loadedAt);
+        }
+    }
+}
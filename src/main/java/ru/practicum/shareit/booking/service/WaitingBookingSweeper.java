@@ -0,0 +1,68 @@
+package ru.practicum.shareit.booking.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.BookingStatus;
+import ru.practicum.shareit.scheduling.JobLeaseRepository;
+import ru.practicum.shareit.sharding.ShardRouter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Закрывает бронирования, которые так и остались в статусе WAITING после даты начала.
+ * Обновление выполняется одним UPDATE на пачку, без загрузки сущностей.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WaitingBookingSweeper {
+    private static final String JOB_NAME = "waiting-booking-sweeper";
+    // decided_at выставляется, чтобы инкрементальная сводка статистики учла решение так же, как пересчёт с нуля.
+    private static final String EXPIRE_BATCH = "update bookings set status = ?, decided_at = ?, " +
+            "version = version + 1 where id in " +
+            "(select id from bookings where status = 'WAITING' and start_date < ? limit ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JobLeaseRepository jobLeaseRepository;
+    private final ShardRouter shardRouter;
+
+    @Value("${shareit.bookings.expiry.status:CANCELED}")
+    private BookingStatus expiredStatus;
+
+    @Value("${shareit.bookings.expiry.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${shareit.bookings.expiry.lease:PT5M}")
+    private Duration lease;
+
+    @Scheduled(fixedDelayString = "${shareit.bookings.expiry.delay-ms:60000}")
+    public void expireWaitingBookings() {
+        shardRouter.forEachShard(this::expireOnCurrentShard);
+    }
+
+    private void expireOnCurrentShard() {
+        if (!jobLeaseRepository.tryAcquire(JOB_NAME, lease)) {
+            return;
+        }
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            long expired = 0;
+            int updated;
+            do {
+                updated = jdbcTemplate.update(EXPIRE_BATCH, expiredStatus.name(), now, now, batchSize);
+                expired += updated;
+            } while (updated == batchSize);
+
+            if (expired > 0) {
+                log.info("Просроченных бронирований в статусе WAITING переведено в {}: {}", expiredStatus, expired);
+            }
+        } finally {
+            jobLeaseRepository.release(JOB_NAME);
+        }
+    }
+}
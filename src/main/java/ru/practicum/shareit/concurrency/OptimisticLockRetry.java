@@ -0,0 +1,47 @@
+package ru.practicum.shareit.concurrency;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.exeptions.ConflictException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Повторяет транзакционную операцию при конфликте версий (@Version).
+ * Вызывается снаружи транзакции, чтобы каждая попытка заново читала актуальное состояние.
+ */
+@Component
+public class OptimisticLockRetry {
+    private final int maxAttempts;
+    private final long backoffMs;
+
+    public OptimisticLockRetry(@Value("${shareit.optimistic-lock.max-attempts:3}") int maxAttempts,
+                               @Value("${shareit.optimistic-lock.backoff-ms:20}") long backoffMs) {
+        this.maxAttempts = maxAttempts;
+        this.backoffMs = backoffMs;
+    }
+
+    public <T> T execute(Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw new ConflictException("Данные были изменены параллельным запросом, повторите попытку");
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        try {
+            Thread.sleep(backoffMs * attempt + ThreadLocalRandom.current().nextLong(backoffMs + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("Данные были изменены параллельным запросом, повторите попытку");
+        }
+    }
+}
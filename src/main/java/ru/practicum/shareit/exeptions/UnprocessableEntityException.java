@@ -0,0 +1,7 @@
+package ru.practicum.shareit.exeptions;
+
+public class UnprocessableEntityException extends RuntimeException {
+    public UnprocessableEntityException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,93 @@
+package ru.practicum.shareit.fields;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Набор полей ответа из параметра fields, например fields=id,name,booker.name.
+ * Поле без уточнения включает вложенный объект целиком. Сервисы по нему решают, какие связи
+ * загружать, а SparseFieldsAdvice удаляет из ответа всё остальное.
+ */
+public final class FieldSet {
+    public static final FieldSet ALL = new FieldSet(null);
+    private static final FieldSet NONE = new FieldSet(Map.of());
+
+    private final Map<String, FieldSet> fields;
+
+    private FieldSet(Map<String, FieldSet> fields) {
+        this.fields = fields;
+    }
+
+    public static FieldSet parse(String spec) {
+        if (spec == null || spec.isBlank()) {
+            return ALL;
+        }
+        return of(Arrays.stream(spec.split(","))
+                .map(String::trim)
+                .filter(path -> !path.isEmpty())
+                .collect(Collectors.toList()));
+    }
+
+    private static FieldSet of(List<String> paths) {
+        Map<String, List<String>> nestedPaths = new LinkedHashMap<>();
+        Set<String> whole = new HashSet<>();
+        for (String path : paths) {
+            int dot = path.indexOf('.');
+            String head = dot < 0 ? path : path.substring(0, dot);
+            List<String> rest = nestedPaths.computeIfAbsent(head, key -> new ArrayList<>());
+            if (dot < 0) {
+                whole.add(head);
+            } else {
+                rest.add(path.substring(dot + 1));
+            }
+        }
+
+        Map<String, FieldSet> fields = new LinkedHashMap<>();
+        nestedPaths.forEach((head, rest) -> fields.put(head, whole.contains(head) ? ALL : of(rest)));
+        return new FieldSet(fields);
+    }
+
+    public boolean isAll() {
+        return fields == null;
+    }
+
+    public boolean includes(String field) {
+        return fields == null || fields.containsKey(field);
+    }
+
+    public boolean includesAny(String... names) {
+        return Arrays.stream(names).anyMatch(this::includes);
+    }
+
+    public FieldSet nested(String field) {
+        return fields == null ? ALL : fields.getOrDefault(field, NONE);
+    }
+
+    public JsonNode prune(JsonNode node) {
+        if (fields == null || node == null) {
+            return node;
+        }
+        if (node.isArray()) {
+            node.forEach(this::prune);
+        } else if (node.isObject()) {
+            ObjectNode object = (ObjectNode) node;
+            object.retain(fields.keySet());
+            fields.forEach((name, nested) -> nested.prune(object.get(name)));
+        }
+        return node;
+    }
+
+    @Override
+    public String toString() {
+        return fields == null ? "*" : fields.toString();
+    }
+}
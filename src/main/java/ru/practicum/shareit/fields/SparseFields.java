@@ -0,0 +1,14 @@
+package ru.practicum.shareit.fields;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Обработчик, ответ которого можно сократить параметром fields.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SparseFields {
+}
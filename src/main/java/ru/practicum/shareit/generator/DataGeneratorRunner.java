@@ -0,0 +1,69 @@
+package ru.practicum.shareit.generator;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Запускает генератор синтетических данных при старте приложения с аргументом --generate-data.
+ * Объёмы и seed можно переопределить аргументами, например
+ * --generate-data --seed=42 --users=1000000 --items=3000000 --bookings=20000000 --base-time=2026-01-01T00:00.
+ */
+@Component
+@RequiredArgsConstructor
+public class DataGeneratorRunner implements ApplicationRunner {
+    public static final String GENERATE_OPTION = "generate-data";
+
+    private final SyntheticDataGenerator generator;
+
+    @Value("${shareit.generator.seed:42}")
+    private long seed;
+
+    @Value("${shareit.generator.users:100000}")
+    private int users;
+
+    @Value("${shareit.generator.items:300000}")
+    private int items;
+
+    @Value("${shareit.generator.bookings:2000000}")
+    private int bookings;
+
+    @Value("${shareit.generator.owner-skew:1.1}")
+    private double ownerSkew;
+
+    @Value("${shareit.generator.item-skew:0.9}")
+    private double itemSkew;
+
+    @Value("${shareit.generator.comment-rate:0.2}")
+    private double commentRate;
+
+    @Value("${shareit.generator.burst-rate:0.002}")
+    private double burstRate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!args.containsOption(GENERATE_OPTION)) {
+            return;
+        }
+        // Без явного base-time отсчёт ведётся от начала текущих суток, чтобы прогоны в один день совпадали.
+        String baseTime = option(args, "base-time", null);
+        generator.generate(new GeneratorSettings(
+                Long.parseLong(option(args, "seed", String.valueOf(seed))),
+                Integer.parseInt(option(args, "users", String.valueOf(users))),
+                Integer.parseInt(option(args, "items", String.valueOf(items))),
+                Integer.parseInt(option(args, "bookings", String.valueOf(bookings))),
+                baseTime != null ? LocalDateTime.parse(baseTime) : LocalDate.now().atStartOfDay(),
+                ownerSkew, itemSkew, commentRate, burstRate));
+    }
+
+    private String option(ApplicationArguments args, String name, String defaultValue) {
+        List<String> values = args.getOptionValues(name);
+        return values == null || values.isEmpty() ? defaultValue : values.get(0);
+    }
+}
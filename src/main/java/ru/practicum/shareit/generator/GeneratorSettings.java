@@ -0,0 +1,10 @@
+package ru.practicum.shareit.generator;
+
+import java.time.LocalDateTime;
+
+/**
+ * Параметры одного запуска генератора. При одинаковых параметрах генерируются одинаковые строки.
+ */
+record GeneratorSettings(long seed, int users, int items, int bookings, LocalDateTime baseTime,
+                         double ownerSkew, double itemSkew, double commentRate, double burstRate) {
+}
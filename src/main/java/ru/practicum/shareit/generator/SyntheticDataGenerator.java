@@ -0,0 +1,238 @@
+package ru.practicum.shareit.generator;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.service.CompletedRentalBackfillRunner;
+import ru.practicum.shareit.item.GeoHash;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Заполняет БД синтетическими пользователями, вещами, бронированиями и отзывами пачечными вставками JDBC.
+ * Владельцы вещей и спрос на вещи распределены по Ципфу, бронирования одной вещи пересекаются по времени,
+ * а часть отзывов приходит всплесками — серией завершённых аренд одной вещи в один день.
+ * Все случайные величины берутся из генераторов, инициализированных seed, а время отсчитывается от
+ * baseTime, поэтому повторный запуск с теми же параметрами даёт те же строки.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SyntheticDataGenerator {
+    private static final String INSERT_USER =
+            "insert into users (id, name, email, deleted, version) values (?, ?, ?, false, 0)";
+    private static final String INSERT_ITEM = "insert into items (id, name, description, is_available, owner_id, " +
+            "latitude, longitude, geohash, version) values (?, ?, ?, ?, ?, ?, ?, ?, 0)";
+    private static final String INSERT_BOOKING = "insert into bookings (id, start_date, end_date, item_id, " +
+            "booker_id, status, decided_at, version) values (?, ?, ?, ?, ?, ?, ?, 0)";
+    private static final String INSERT_COMMENT =
+            "insert into comments (id, text, item_id, author_id, created) values (?, ?, ?, ?, ?)";
+    private static final String RESTART_IDENTITY = "alter table %s alter column id restart with %d";
+
+    private static final String[] ADJECTIVES = {"Старый", "Новый", "Мощный", "Компактный", "Складной",
+            "Детский", "Туристический", "Профессиональный", "Электрический", "Ручной"};
+    private static final String[] NOUNS = {"дрель", "велосипед", "палатка", "перфоратор", "самокат",
+            "лестница", "проектор", "шуруповёрт", "каяк", "гитара", "пила", "фотоаппарат", "мангал"};
+    private static final String[] COMMENTS = {"Всё отлично, спасибо!", "Работает как надо", "Немного потёрто",
+            "Владелец быстро ответил", "Рекомендую", "Пришлось подзарядить", "Вернул вовремя, без проблем"};
+    // Центры городов, вокруг которых раскладываются координаты вещей.
+    private static final double[][] CITIES = {{55.7558, 37.6173}, {59.9343, 30.3351}, {56.8389, 60.6057},
+            {55.0084, 82.9357}, {55.7963, 49.1088}};
+
+    private static final long USER_STREAM = 0x75736572L;
+    private static final long ITEM_STREAM = 0x6974656dL;
+    private static final long BOOKING_STREAM = 0x626f6f6bL;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CompletedRentalBackfillRunner completedRentalBackfillRunner;
+
+    @Value("${shareit.generator.batch-size:5000}")
+    private int batchSize;
+
+    public void generate(GeneratorSettings settings) {
+        if (settings.users() < 2 || settings.items() < 1) {
+            throw new IllegalArgumentException("Нужно хотя бы два пользователя и одна вещь");
+        }
+        long started = System.nanoTime();
+        long firstUserId = nextId("users");
+        long firstItemId = nextId("items");
+
+        generateUsers(settings, firstUserId);
+        long[] itemOwners = generateItems(settings, firstUserId, firstItemId);
+        long[] counts = generateBookingsAndComments(settings, firstUserId, firstItemId, itemOwners);
+
+        restartIdentity("users", firstUserId + settings.users());
+        restartIdentity("items", firstItemId + settings.items());
+        restartIdentity("bookings", counts[0]);
+        restartIdentity("comments", counts[1]);
+        completedRentalBackfillRunner.rebuild();
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+        long rows = settings.users() + settings.items() + counts[2] + counts[3];
+        log.info("Сгенерировано {} пользователей, {} вещей, {} бронирований, {} отзывов за {} с ({} строк/с), seed={}",
+                settings.users(), settings.items(), counts[2], counts[3], String.format("%.1f", seconds),
+                Math.round(rows / Math.max(seconds, 1e-3)), settings.seed());
+    }
+
+    private void generateUsers(GeneratorSettings settings, long firstUserId) {
+        SplittableRandom random = new SplittableRandom(settings.seed() ^ USER_STREAM);
+        BatchBuffer batch = new BatchBuffer(INSERT_USER);
+        for (int i = 0; i < settings.users(); i++) {
+            long id = firstUserId + i;
+            batch.add(id, "Пользователь " + id + "-" + Integer.toString(random.nextInt(1 << 20), 36),
+                    "user" + id + "." + settings.seed() + "@shareit.test");
+        }
+        batch.flush();
+    }
+
+    private long[] generateItems(GeneratorSettings settings, long firstUserId, long firstItemId) {
+        SplittableRandom random = new SplittableRandom(settings.seed() ^ ITEM_STREAM);
+        ZipfSampler owners = new ZipfSampler(settings.users(), settings.ownerSkew());
+        long[] itemOwners = new long[settings.items()];
+        BatchBuffer batch = new BatchBuffer(INSERT_ITEM);
+        for (int i = 0; i < settings.items(); i++) {
+            long ownerId = firstUserId + owners.sample(random);
+            itemOwners[i] = ownerId;
+            String name = pick(random, ADJECTIVES) + " " + pick(random, NOUNS);
+            boolean available = random.nextDouble() < 0.9;
+
+            Double latitude = null;
+            Double longitude = null;
+            String geohash = null;
+            if (random.nextDouble() < 0.7) {
+                double[] city = CITIES[random.nextInt(CITIES.length)];
+                latitude = city[0] + (random.nextDouble() - 0.5) * 0.3;
+                longitude = city[1] + (random.nextDouble() - 0.5) * 0.5;
+                geohash = GeoHash.encode(latitude, longitude);
+            }
+            batch.add(firstItemId + i, name, name + ", в хорошем состоянии. Лот " + (firstItemId + i),
+                    available, ownerId, latitude, longitude, geohash);
+        }
+        batch.flush();
+        return itemOwners;
+    }
+
+    /**
+     * Возвращает следующий id бронирования, следующий id отзыва, число бронирований и число отзывов.
+     */
+    private long[] generateBookingsAndComments(GeneratorSettings settings, long firstUserId, long firstItemId,
+                                               long[] itemOwners) {
+        SplittableRandom random = new SplittableRandom(settings.seed() ^ BOOKING_STREAM);
+        ZipfSampler demand = new ZipfSampler(settings.items(), settings.itemSkew());
+        BatchBuffer bookings = new BatchBuffer(INSERT_BOOKING);
+        BatchBuffer comments = new BatchBuffer(INSERT_COMMENT);
+        long bookingId = nextId("bookings");
+        long commentId = nextId("comments");
+        long bookingCount = 0;
+        long commentCount = 0;
+
+        while (bookingCount < settings.bookings()) {
+            int itemIndex = demand.sample(random);
+            long itemId = firstItemId + itemIndex;
+            long ownerId = itemOwners[itemIndex];
+            LocalDateTime start = settings.baseTime()
+                    .minusDays(365).plusMinutes(random.nextLong(425L * 24 * 60));
+
+            // Всплеск: несколько аренд одной вещи, закончившихся в один день, и отзывы почти по каждой
+            // в течение нескольких часов после окончания.
+            boolean burst = random.nextDouble() < settings.burstRate();
+            int size = burst ? 5 + random.nextInt(46) : 1;
+            LocalDateTime burstDay = start.truncatedTo(ChronoUnit.DAYS);
+            for (int i = 0; i < size && bookingCount < settings.bookings(); i++) {
+                LocalDateTime bookingStart;
+                LocalDateTime end;
+                if (burst) {
+                    end = burstDay.plusMinutes(random.nextInt(24 * 60));
+                    bookingStart = end.minusMinutes(60 + random.nextLong(7L * 24 * 60));
+                } else {
+                    bookingStart = start;
+                    end = bookingStart.plusMinutes(60 + random.nextLong(7L * 24 * 60));
+                }
+                long bookerId = booker(random, settings.users(), firstUserId, ownerId);
+                String status = status(random, end, settings.baseTime());
+                LocalDateTime decidedAt = "WAITING".equals(status)
+                        ? null
+                        : min(bookingStart.minusMinutes(random.nextInt(3 * 24 * 60)), settings.baseTime());
+
+                bookings.add(bookingId++, Timestamp.valueOf(bookingStart), Timestamp.valueOf(end), itemId, bookerId,
+                        status, decidedAt == null ? null : Timestamp.valueOf(decidedAt));
+                bookingCount++;
+
+                double commentProbability = burst ? 0.9 : settings.commentRate();
+                if ("APPROVED".equals(status) && end.isBefore(settings.baseTime())
+                        && random.nextDouble() < commentProbability) {
+                    int delayMinutes = burst ? random.nextInt(6 * 60) : random.nextInt(48 * 60);
+                    LocalDateTime created = min(end.plusMinutes(delayMinutes), settings.baseTime());
+                    comments.add(commentId++, pick(random, COMMENTS), itemId, bookerId, Timestamp.valueOf(created));
+                    commentCount++;
+                }
+            }
+        }
+        bookings.flush();
+        comments.flush();
+        return new long[]{bookingId, commentId, bookingCount, commentCount};
+    }
+
+    private long booker(SplittableRandom random, int users, long firstUserId, long ownerId) {
+        long bookerId;
+        do {
+            bookerId = firstUserId + random.nextInt(users);
+        } while (bookerId == ownerId);
+        return bookerId;
+    }
+
+    private String status(SplittableRandom random, LocalDateTime end, LocalDateTime baseTime) {
+        double roll = random.nextDouble();
+        if (end.isBefore(baseTime)) {
+            return roll < 0.8 ? "APPROVED" : roll < 0.95 ? "REJECTED" : "CANCELED";
+        }
+        return roll < 0.6 ? "APPROVED" : roll < 0.9 ? "WAITING" : "REJECTED";
+    }
+
+    private long nextId(String table) {
+        Long max = jdbcTemplate.queryForObject("select max(id) from " + table, Long.class);
+        return max == null ? 1 : max + 1;
+    }
+
+    private void restartIdentity(String table, long nextId) {
+        jdbcTemplate.execute(String.format(RESTART_IDENTITY, table, nextId));
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private class BatchBuffer {
+        private final String sql;
+        private final List<Object[]> rows = new ArrayList<>(batchSize);
+
+        BatchBuffer(String sql) {
+            this.sql = sql;
+        }
+
+        void add(Object... row) {
+            rows.add(row);
+            if (rows.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(sql, rows);
+                rows.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ru.practicum.shareit.generator;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Выбор ранга 0..n-1 с вероятностью, пропорциональной 1 / (rank + 1)^exponent.
+ * Небольшое число «крупных» владельцев и популярных вещей получает большую часть строк.
+ */
+class ZipfSampler {
+    private final double[] cumulative;
+
+    ZipfSampler(int n, double exponent) {
+        cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    int sample(SplittableRandom random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        int rank = index >= 0 ? index : -index - 1;
+        return Math.min(rank, cumulative.length - 1);
+    }
+}
@@ -0,0 +1,144 @@
+package ru.practicum.shareit.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.exeptions.ConflictException;
+import ru.practicum.shareit.exeptions.UnprocessableEntityException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Выполняет POST-запрос не более одного раза для пары (пользователь, Idempotency-Key).
+ * Повтор получает сохранённый ответ, а повтор, пришедший во время выполнения оригинала,
+ * дожидается его результата вместо собственного выполнения. Вместе с ответом хранится хеш тела запроса:
+ * тот же ключ с другим телом — ошибка клиента, и он отклоняется с 422, а не получает чужой ответ.
+ */
+@Component
+public class IdempotencyService {
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration waitTimeout;
+    private final ConcurrentHashMap<String, Pending> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(IdempotencyStore store, ObjectMapper objectMapper,
+                              @Value("${shareit.idempotency.ttl:PT24H}") Duration ttl,
+                              @Value("${shareit.idempotency.wait-timeout:PT30S}") Duration waitTimeout) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.waitTimeout = waitTimeout;
+    }
+
+    public <T> T execute(String operation, Long userId, String idempotencyKey, Object request,
+                         Class<T> responseType, Supplier<T> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        String key = operation + ":" + userId + ":" + idempotencyKey;
+        String requestHash = hash(write(request));
+
+        Optional<StoredResponse> stored = store.find(key);
+        if (stored.isPresent()) {
+            return read(checked(stored.get(), requestHash), responseType);
+        }
+
+        Pending own = new Pending(requestHash, new CompletableFuture<>());
+        Pending original = inFlight.putIfAbsent(key, own);
+        if (original != null) {
+            checkSameRequest(original.requestHash(), requestHash);
+            return read(await(original.response()), responseType);
+        }
+
+        try {
+            // Оригинал мог завершиться между первой проверкой и захватом ключа.
+            Optional<StoredResponse> completed = store.find(key);
+            if (completed.isPresent()) {
+                String response = checked(completed.get(), requestHash);
+                own.response().complete(response);
+                return read(response, responseType);
+            }
+
+            T response = action.get();
+            String serialized = write(response);
+            store.save(key, new StoredResponse(requestHash, serialized), ttl);
+            own.response().complete(serialized);
+            return response;
+        } catch (RuntimeException e) {
+            own.response().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    private String checked(StoredResponse stored, String requestHash) {
+        checkSameRequest(stored.requestHash(), requestHash);
+        return stored.response();
+    }
+
+    private void checkSameRequest(String originalHash, String requestHash) {
+        if (!originalHash.equals(requestHash)) {
+            throw new UnprocessableEntityException("Idempotency-Key уже использован для запроса с другим телом");
+        }
+    }
+
+    private String hash(String body) {
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String await(CompletableFuture<String> original) {
+        try {
+            return original.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new ConflictException("Запрос с этим Idempotency-Key ещё выполняется");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("Запрос с этим Idempotency-Key ещё выполняется");
+        }
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать идемпотентный запрос", e);
+        }
+    }
+
+    private <T> T read(String response, Class<T> responseType) {
+        try {
+            return objectMapper.readValue(response, responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось восстановить ответ идемпотентного запроса", e);
+        }
+    }
+
+    private record Pending(String requestHash, CompletableFuture<String> response) {
+    }
+}
@@ -0,0 +1,15 @@
+package ru.practicum.shareit.idempotency;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Хранилище сериализованных ответов на запросы с заголовком Idempotency-Key.
+ * По умолчанию используется {@link InMemoryIdempotencyStore}; для нескольких узлов
+ * достаточно зарегистрировать реализацию поверх общего хранилища как @Primary бин.
+ */
+public interface IdempotencyStore {
+    Optional<StoredResponse> find(String key);
+
+    void save(String key, StoredResponse response, Duration ttl);
+}
@@ -0,0 +1,53 @@
+package ru.practicum.shareit.idempotency;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Ограниченное по размеру хранилище в памяти узла с вытеснением по TTL.
+ * Записи лежат в порядке вставки, поэтому истёкшие всегда находятся в начале.
+ */
+@Component
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+    private final Map<String, Entry> entries;
+
+    public InMemoryIdempotencyStore(@Value("${shareit.idempotency.max-entries:10000}") int maxEntries) {
+        this.entries = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public synchronized Optional<StoredResponse> find(String key) {
+        evictExpired();
+        Entry entry = entries.get(key);
+        return entry == null ? Optional.empty() : Optional.of(entry.response());
+    }
+
+    @Override
+    public synchronized void save(String key, StoredResponse response, Duration ttl) {
+        evictExpired();
+        entries.remove(key);
+        entries.put(key, new Entry(response, System.currentTimeMillis() + ttl.toMillis()));
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext() && iterator.next().expiresAt() <= now) {
+            iterator.remove();
+        }
+    }
+
+    private record Entry(StoredResponse response, long expiresAt) {
+    }
+}
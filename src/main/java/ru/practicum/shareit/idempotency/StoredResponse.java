@@ -0,0 +1,7 @@
+package ru.practicum.shareit.idempotency;
+
+/**
+ * Сохранённый ответ вместе с хешем тела запроса, на который он был получен.
+ */
+public record StoredResponse(String requestHash, String response) {
+}
@@ -0,0 +1,115 @@
+package ru.practicum.shareit.item;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Кодирование координат в geohash и подбор ячеек, покрывающих круг заданного радиуса.
+ * Вещи, чей geohash начинается с одной из ячеек, ищутся диапазонным запросом по B-tree индексу.
+ */
+public class GeoHash {
+    public static final int PRECISION = 12;
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180;
+
+    private GeoHash() {
+    }
+
+    public static String encode(double latitude, double longitude) {
+        return encode(latitude, longitude, PRECISION);
+    }
+
+    public static String encode(double latitude, double longitude, int precision) {
+        double[] lat = {-90, 90};
+        double[] lon = {-180, 180};
+        StringBuilder hash = new StringBuilder(precision);
+        boolean evenBit = true;
+        int bit = 0;
+        int ch = 0;
+
+        while (hash.length() < precision) {
+            double[] range = evenBit ? lon : lat;
+            double value = evenBit ? longitude : latitude;
+            double mid = (range[0] + range[1]) / 2;
+            if (value >= mid) {
+                ch = (ch << 1) | 1;
+                range[0] = mid;
+            } else {
+                ch = ch << 1;
+                range[1] = mid;
+            }
+            evenBit = !evenBit;
+            if (++bit == 5) {
+                hash.append(BASE32.charAt(ch));
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    /**
+     * Возвращает ячейку центра и соседние с ней ячейки такой точности, что каждая не меньше радиуса.
+     */
+    public static Set<String> coveringCells(double latitude, double longitude, double radiusKm) {
+        int precision = precisionFor(latitude, radiusKm);
+        double cellLat = cellHeightDegrees(precision);
+        double cellLon = cellWidthDegrees(precision);
+
+        Set<String> cells = new LinkedHashSet<>();
+        for (int dLat = -1; dLat <= 1; dLat++) {
+            for (int dLon = -1; dLon <= 1; dLon++) {
+                double lat = Math.max(-90, Math.min(90 - 1e-9, latitude + dLat * cellLat));
+                double lon = normalizeLongitude(longitude + dLon * cellLon);
+                cells.add(encode(lat, lon, precision));
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Верхняя граница диапазона geohash с данным префиксом (включительно).
+     */
+    public static String upperBound(String prefix) {
+        return prefix + "z".repeat(PRECISION - prefix.length());
+    }
+
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static int precisionFor(double latitude, double radiusKm) {
+        double cosLat = Math.max(Math.cos(Math.toRadians(latitude)), 0.01);
+        for (int precision = PRECISION; precision > 1; precision--) {
+            double heightKm = cellHeightDegrees(precision) * KM_PER_DEGREE;
+            double widthKm = cellWidthDegrees(precision) * KM_PER_DEGREE * cosLat;
+            if (heightKm >= radiusKm && widthKm >= radiusKm) {
+                return precision;
+            }
+        }
+        return 1;
+    }
+
+    private static double cellHeightDegrees(int precision) {
+        return 180 / Math.pow(2, (5 * precision) / 2);
+    }
+
+    private static double cellWidthDegrees(int precision) {
+        return 360 / Math.pow(2, (5 * precision + 1) / 2);
+    }
+
+    private static double normalizeLongitude(double longitude) {
+        double normalized = (longitude + 180) % 360;
+        if (normalized < 0) {
+            normalized += 360;
+        }
+        return normalized - 180;
+    }
+}
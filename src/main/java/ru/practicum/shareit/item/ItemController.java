@@ -1,39 +1,98 @@
 package ru.practicum.shareit.item;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.shareit.concurrency.OptimisticLockRetry;
 import ru.practicum.shareit.exeptions.ValidationException;
+import ru.practicum.shareit.fields.FieldSet;
+import ru.practicum.shareit.fields.SparseFields;
+import ru.practicum.shareit.idempotency.IdempotencyService;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemPhotoDto;
+import ru.practicum.shareit.item.dto.ItemSuggestionDto;
 import ru.practicum.shareit.item.dto.ItemWithBookingsDto;
+import ru.practicum.shareit.item.dto.NearbyItemDto;
+import ru.practicum.shareit.item.dto.PopularItemDto;
+import ru.practicum.shareit.item.service.ItemPhotoService;
 import ru.practicum.shareit.item.service.ItemService;
 import ru.practicum.shareit.item.service.ItemServiceImpl;
+import ru.practicum.shareit.item.service.ItemViewCoalescer;
+import ru.practicum.shareit.item.service.PhotoFile;
+import ru.practicum.shareit.sharding.ShardRouter;
+import ru.practicum.shareit.stats.dto.UtilizationStatsDto;
+import ru.practicum.shareit.stats.service.StatsService;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.util.List;
 
+import static ru.practicum.shareit.idempotency.IdempotencyService.IDEMPOTENCY_KEY_HEADER;
+
 @RestController
 @RequestMapping("/items")
 @RequiredArgsConstructor
 public class ItemController {
     private final ItemService itemService;
+    private final IdempotencyService idempotencyService;
+    private final OptimisticLockRetry optimisticLockRetry;
+    private final StatsService statsService;
+    private final ShardRouter shardRouter;
+    private final ItemPhotoService itemPhotoService;
+    private final PhotoResponseWriter photoResponseWriter;
+    private final ItemViewCoalescer itemViewCoalescer;
     private static final String USER_ID_HEADER = "X-Sharer-User-Id";
 
     @PostMapping
     public ItemDto createItem(@Valid @RequestBody ItemDto itemDto,
-                              @RequestHeader(USER_ID_HEADER) Long ownerId) {
-        return itemService.createItem(itemDto, ownerId);
+                              @RequestHeader(USER_ID_HEADER) Long ownerId,
+                              @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("createItem", ownerId, idempotencyKey, itemDto, ItemDto.class,
+                () -> shardRouter.onOwnerShard(ownerId, () -> itemService.createItem(itemDto, ownerId)));
     }
 
+    @SparseFields
     @GetMapping("/{itemId}")
     public ItemWithBookingsDto getItemById(@PathVariable Long itemId,
-                                           @RequestHeader(USER_ID_HEADER) Long userId) {
-        return itemService.getItemById(itemId, userId);
+                                           @RequestHeader(USER_ID_HEADER) Long userId,
+                                           @RequestParam(required = false) String fields) {
+        FieldSet fieldSet = FieldSet.parse(fields);
+        return shardRouter.onShardOf(itemId, () -> itemViewCoalescer.getItem(itemId, userId, fieldSet,
+                () -> itemService.getItemById(itemId, userId, fieldSet)));
     }
 
+    @GetMapping("/{itemId}/stats")
+    public UtilizationStatsDto getItemStats(@PathVariable Long itemId,
+                                            @RequestHeader(USER_ID_HEADER) Long userId,
+                                            @RequestParam(required = false)
+                                            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                            @RequestParam(required = false)
+                                            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                            @RequestParam(defaultValue = "day") String granularity) {
+        return shardRouter.onShardOf(itemId,
+                () -> statsService.getItemStats(itemId, userId, from, to, granularity));
+    }
+
+    @SparseFields
+    @GetMapping(params = "ids")
+    public List<ItemWithBookingsDto> getItemsByIds(@RequestParam List<Long> ids,
+                                                   @RequestHeader(USER_ID_HEADER) Long userId,
+                                                   @RequestParam(required = false) String fields) {
+        return itemService.getItemsByIds(ids, userId, FieldSet.parse(fields));
+    }
+
+    @SparseFields
     @GetMapping
-    public List<ItemWithBookingsDto> getItemsByOwnerId(@RequestHeader(USER_ID_HEADER) Long ownerId) {
-        return itemService.getItemsByOwnerId(ownerId);
+    public List<ItemWithBookingsDto> getItemsByOwnerId(@RequestHeader(USER_ID_HEADER) Long ownerId,
+                                                       @RequestParam(required = false) String fields) {
+        return shardRouter.onOwnerShard(ownerId,
+                () -> itemService.getItemsByOwnerId(ownerId, FieldSet.parse(fields)));
     }
 
     @PatchMapping("/{itemId}")
@@ -43,7 +102,8 @@ public class ItemController {
         if (ownerId == null) {
             throw new ValidationException("Заголовок " + USER_ID_HEADER + " обязателен");
         }
-        return itemService.updateItem(itemId, itemDto, ownerId);
+        return optimisticLockRetry.execute(() -> shardRouter.onShardOf(itemId,
+                () -> itemService.updateItem(itemId, itemDto, ownerId)));
     }
 
     @GetMapping("/search")
@@ -51,10 +111,66 @@ public class ItemController {
         return itemService.searchItems(text);
     }
 
+    @GetMapping("/nearby")
+    public List<NearbyItemDto> searchNearbyItems(@RequestParam double lat,
+                                                 @RequestParam double lon,
+                                                 @RequestParam(defaultValue = "5") double radiusKm,
+                                                 @RequestParam(required = false) String text,
+                                                 @RequestParam(defaultValue = "0") int from,
+                                                 @RequestParam(defaultValue = "20") int size) {
+        return itemService.searchNearbyItems(lat, lon, radiusKm, text, from, size);
+    }
+
+    @GetMapping("/suggest")
+    public List<ItemSuggestionDto> suggestItems(@RequestParam String prefix,
+                                                @RequestParam(defaultValue = "10") int limit) {
+        return itemService.suggestItems(prefix, limit);
+    }
+
+    @GetMapping("/rented")
+    public List<ItemDto> getRentedItems(@RequestHeader(USER_ID_HEADER) Long userId,
+                                        @RequestParam(defaultValue = "0") int from,
+                                        @RequestParam(defaultValue = "20") int size) {
+        return itemService.getRentedItems(userId, from, size);
+    }
+
+    @GetMapping("/popular")
+    public List<PopularItemDto> getPopularItems(@RequestParam(defaultValue = "7d") String window,
+                                                @RequestParam(defaultValue = "50") int limit) {
+        return itemService.getPopularItems(window, limit);
+    }
+
+    // Тело запроса — сами байты изображения: оно пишется в хранилище по мере чтения из сокета,
+    // без промежуточного буфера multipart-парсера.
+    @PostMapping(path = "/{itemId}/photos",
+            consumes = {MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE, MediaType.IMAGE_GIF_VALUE, "image/webp"})
+    public ItemPhotoDto uploadPhoto(@PathVariable Long itemId,
+                                    @RequestHeader(USER_ID_HEADER) Long ownerId,
+                                    HttpServletRequest request) throws IOException {
+        InputStream content = request.getInputStream();
+        return shardRouter.onShardOf(itemId,
+                () -> itemPhotoService.addPhoto(itemId, ownerId, request.getContentType(), content));
+    }
+
+    @GetMapping("/{itemId}/photos/{hash}")
+    public void getPhoto(@PathVariable Long itemId,
+                         @PathVariable String hash,
+                         @RequestParam(defaultValue = "false") boolean thumbnail,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        PhotoFile photo = shardRouter.onShardOf(itemId, () -> itemPhotoService.getPhoto(itemId, hash, thumbnail));
+        photoResponseWriter.write(photo, thumbnail, request, response);
+    }
+
     @PostMapping("/{itemId}/comment")
     public CommentDto addComment(@PathVariable Long itemId,
                                  @Valid @RequestBody CommentDto commentDto,
-                                 @RequestHeader(USER_ID_HEADER) Long authorId) {
-        return ((ItemServiceImpl) itemService).addComment(itemId, commentDto, authorId);
+                                 @RequestHeader(USER_ID_HEADER) Long authorId,
+                                 @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false)
+                                 String idempotencyKey) {
+        return idempotencyService.execute("addComment:" + itemId, authorId, idempotencyKey, commentDto,
+                CommentDto.class,
+                () -> shardRouter.onShardOf(itemId,
+                        () -> ((ItemServiceImpl) itemService).addComment(itemId, commentDto, authorId)));
     }
 }
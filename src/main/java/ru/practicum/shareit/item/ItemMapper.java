@@ -13,6 +13,8 @@ public class ItemMapper {
         itemDto.setDescription(item.getDescription());
         itemDto.setAvailable(item.getAvailable());
         itemDto.setRequestId(item.getRequest() != null ? item.getRequest().getId() : null);
+        itemDto.setLatitude(item.getLatitude());
+        itemDto.setLongitude(item.getLongitude());
         return itemDto;
     }
 
@@ -23,6 +25,7 @@ public class ItemMapper {
         item.setDescription(itemDto.getDescription());
         item.setAvailable(itemDto.getAvailable());
         item.setRequest(request);
+        setLocation(item, itemDto.getLatitude(), itemDto.getLongitude());
         return item;
     }
 
@@ -30,6 +33,12 @@ public class ItemMapper {
         return toItem(itemDto, null);
     }
 
+    public static void setLocation(Item item, Double latitude, Double longitude) {
+        item.setLatitude(latitude);
+        item.setLongitude(longitude);
+        item.setGeohash(latitude != null && longitude != null ? GeoHash.encode(latitude, longitude) : null);
+    }
+
     public static ItemWithBookingsDto toItemWithBookingsDto(Item item) {
         ItemWithBookingsDto dto = new ItemWithBookingsDto();
         dto.setId(item.getId());
@@ -37,6 +46,8 @@ public class ItemMapper {
         dto.setDescription(item.getDescription());
         dto.setAvailable(item.getAvailable());
         dto.setRequestId(item.getRequest() != null ? item.getRequest().getId() : null);
+        dto.setLatitude(item.getLatitude());
+        dto.setLongitude(item.getLongitude());
         return dto;
     }
 }
@@ -0,0 +1,95 @@
+package ru.practicum.shareit.item;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.item.service.PhotoFile;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Отдаёт файл фотографии с поддержкой одиночных Range-запросов и строгим кешированием.
+ * Если контейнер поддерживает sendfile, тело передаётся ядром напрямую из файла в сокет,
+ * иначе — через FileChannel.transferTo.
+ */
+@Component
+public class PhotoResponseWriter {
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    // Содержимое по хешу не меняется, поэтому кешировать можно бессрочно.
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+    // Вместо ещё не готовой миниатюры отдан оригинал: кеш должен перепроверять ответ, иначе по адресу
+    // миниатюры навсегда останется полноразмерный файл. ETag у миниатюры другой, и она придёт целиком.
+    private static final String FALLBACK_CACHE_CONTROL = "no-cache";
+
+    public void write(PhotoFile photo, boolean thumbnailRequested, HttpServletRequest request,
+                      HttpServletResponse response) throws IOException {
+        String etag = "\"" + photo.hash() + (photo.thumbnail() ? "-thumb" : "") + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                thumbnailRequested && !photo.thumbnail() ? FALLBACK_CACHE_CONTROL : CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long length = photo.size();
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length);
+                }
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            // Несколько диапазонов не поддерживаются: по RFC 9110 тогда можно отдать файл целиком.
+            if (ranges.size() == 1) {
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        response.setContentType(photo.contentType());
+        response.setContentLengthLong(end - start + 1);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, photo.path().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(photo.path(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = end - start + 1;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+}
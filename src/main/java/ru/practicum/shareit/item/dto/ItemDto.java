@@ -1,5 +1,7 @@
 package ru.practicum.shareit.item.dto;
 
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.AccessLevel;
@@ -26,6 +28,14 @@ public class ItemDto {
 
     Long requestId;
 
+    @DecimalMin(value = "-90.0", message = "Широта должна быть в диапазоне от -90 до 90")
+    @DecimalMax(value = "90.0", message = "Широта должна быть в диапазоне от -90 до 90")
+    Double latitude;
+
+    @DecimalMin(value = "-180.0", message = "Долгота должна быть в диапазоне от -180 до 180")
+    @DecimalMax(value = "180.0", message = "Долгота должна быть в диапазоне от -180 до 180")
+    Double longitude;
+
  /*   public ItemDto(String name, String description, Boolean available, Long requestId) {
         this.name = name;
         this.description = description;
@@ -19,9 +19,12 @@ public class ItemWithBookingsDto {
     String description;
     Boolean available;
     Long requestId;
+    Double latitude;
+    Double longitude;
     BookingInfo lastBooking;
     BookingInfo nextBooking;
     List<CommentDto> comments;
+    List<String> photos;
 
     @Data
     @AllArgsConstructor
@@ -12,7 +12,7 @@ import ru.practicum.shareit.request.ItemRequest;
 import ru.practicum.shareit.user.model.User;
 
 @Entity
-@Table(name = "items")
+@Table(name = "items", indexes = @Index(name = "idx_items_geohash", columnList = "geohash"))
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -41,4 +41,17 @@ public class Item {
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "request_id")
     ItemRequest request;
+
+    @Column(name = "latitude")
+    Double latitude;
+
+    @Column(name = "longitude")
+    Double longitude;
+
+    @Column(name = "geohash", length = 12)
+    String geohash;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    Long version;
 }
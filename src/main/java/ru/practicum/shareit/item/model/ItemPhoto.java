@@ -0,0 +1,41 @@
+package ru.practicum.shareit.item.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Метаданные фотографии вещи. Сам файл лежит в хранилище по SHA-256 содержимого.
+ */
+@Entity
+@Table(name = "item_photos",
+        uniqueConstraints = @UniqueConstraint(name = "uq_item_photo", columnNames = {"item_id", "hash"}))
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ItemPhoto {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Column(name = "item_id", nullable = false)
+    Long itemId;
+
+    @Column(name = "hash", nullable = false, length = 64)
+    String hash;
+
+    @Column(name = "content_type", nullable = false, length = 50)
+    String contentType;
+
+    @Column(name = "size_bytes", nullable = false)
+    long size;
+
+    @Column(name = "uploaded_at", nullable = false)
+    LocalDateTime uploadedAt;
+}
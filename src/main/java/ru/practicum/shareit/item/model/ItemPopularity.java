@@ -0,0 +1,46 @@
+package ru.practicum.shareit.item.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Снимок счётчиков популярности вещи за один часовой интервал.
+ */
+@Entity
+@Table(name = "item_popularity")
+@IdClass(ItemPopularity.Key.class)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ItemPopularity {
+    @Id
+    @Column(name = "item_id")
+    Long itemId;
+
+    @Id
+    @Column(name = "bucket_start")
+    LocalDateTime bucketStart;
+
+    @Column(name = "bookings", nullable = false)
+    long bookings;
+
+    @Column(name = "comments", nullable = false)
+    long comments;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Key implements Serializable {
+        Long itemId;
+        LocalDateTime bucketStart;
+    }
+}
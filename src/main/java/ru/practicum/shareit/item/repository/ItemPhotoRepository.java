@@ -0,0 +1,20 @@
+package ru.practicum.shareit.item.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import ru.practicum.shareit.item.model.ItemPhoto;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ItemPhotoRepository extends JpaRepository<ItemPhoto, Long> {
+    Optional<ItemPhoto> findByItemIdAndHash(Long itemId, String hash);
+
+    @Query("select p.hash from ItemPhoto p where p.itemId = ?1 order by p.uploadedAt, p.id")
+    List<String> findHashesByItemId(Long itemId);
+
+    List<ItemPhoto> findByItemIdInOrderByUploadedAtAscIdAsc(Collection<Long> itemIds);
+}
@@ -5,14 +5,29 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import ru.practicum.shareit.item.model.Item;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ItemRepository extends JpaRepository<Item, Long> {
     List<Item> findByOwnerIdOrderById(Long ownerId);
 
+    // Вещи мягко удалённого владельца скрыты от всех чтений до окончательной очистки.
+    Optional<Item> findByIdAndOwnerDeletedFalse(Long id);
+
+    List<Item> findByIdInAndOwnerDeletedFalse(Collection<Long> ids);
+
+    boolean existsByIdAndOwnerDeletedFalse(Long id);
+
+    @Query("select i.owner.id from Item i where i.id = ?1")
+    Optional<Long> findOwnerIdById(Long id);
+
+    @Query("select i.id from Item i where i.owner.id = ?1")
+    List<Long> findIdsByOwnerId(Long ownerId);
+
     @Query("select i from Item i " +
-            "where i.available = true " +
+            "where i.available = true and i.owner.deleted = false " +
             "and (lower(i.name) like lower(concat('%', ?1, '%')) " +
             "or lower(i.description) like lower(concat('%', ?1, '%')))")
     List<Item> searchAvailableItems(String text);
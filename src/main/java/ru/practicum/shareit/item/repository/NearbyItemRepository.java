@@ -0,0 +1,66 @@
+package ru.practicum.shareit.item.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.shareit.item.GeoHash;
+import ru.practicum.shareit.item.dto.NearbyItemDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Поиск доступных вещей в радиусе от точки. Кандидаты отбираются диапазонами geohash по индексу,
+ * а текст, расстояние, сортировка и ограничение выборки считаются в БД, так что в память попадают
+ * только нужные строки без сущностей.
+ */
+@Repository
+@RequiredArgsConstructor
+public class NearbyItemRepository {
+    private static final String DISTANCE_KM = "2 * 6371.0 * asin(least(1, sqrt("
+            + "power(sin(radians(i.latitude - :latitude) / 2), 2) "
+            + "+ cos(radians(:latitude)) * cos(radians(i.latitude)) "
+            + "* power(sin(radians(i.longitude - :longitude) / 2), 2))))";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Возвращает не более limit ближайших вещей из ячеек cells, упорядоченных по расстоянию и id.
+     * needle — подстрока в нижнем регистре или null.
+     */
+    public List<NearbyItemDto> findNearby(Iterable<String> cells, double latitude, double longitude,
+                                          double radiusKm, String needle, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("latitude", latitude)
+                .addValue("longitude", longitude)
+                .addValue("radius", radiusKm)
+                .addValue("limit", limit);
+
+        List<String> ranges = new ArrayList<>();
+        int index = 0;
+        for (String cell : cells) {
+            ranges.add(String.format("i.geohash between :from%d and :to%d", index, index));
+            params.addValue("from" + index, cell).addValue("to" + index, GeoHash.upperBound(cell));
+            index++;
+        }
+        if (ranges.isEmpty()) {
+            return List.of();
+        }
+
+        StringBuilder sql = new StringBuilder("select * from (select i.id, i.name, i.description, i.latitude, ")
+                .append("i.longitude, ").append(DISTANCE_KM).append(" as distance_km ")
+                .append("from items i join users u on u.id = i.owner_id ")
+                .append("where (").append(String.join(" or ", ranges)).append(") ")
+                .append("and i.is_available = true and u.deleted = false");
+        if (needle != null) {
+            sql.append(" and (lower(i.name) like :pattern or lower(i.description) like :pattern)");
+            params.addValue("pattern", "%" + needle + "%");
+        }
+        sql.append(") nearby where distance_km <= :radius order by distance_km, id limit :limit");
+
+        return jdbcTemplate.query(sql.toString(), params, (rs, rowNum) -> new NearbyItemDto(rs.getLong("id"),
+                rs.getString("name"), rs.getString("description"), true, rs.getDouble("latitude"),
+                rs.getDouble("longitude"), rs.getDouble("distance_km")));
+    }
+}
@@ -0,0 +1,167 @@
+package ru.practicum.shareit.item.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.item.dto.ItemSuggestionDto;
+import ru.practicum.shareit.sharding.ShardRouter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Префиксный индекс названий доступных вещей для подсказок при вводе.
+ * Ключ — полное название или отдельное слово названия в нижнем регистре с id вещи на конце,
+ * поиск по префиксу — диапазон упорядоченной skip-list без обращения к БД.
+ * Изменения из транзакции применяются после её фиксации, чтобы в подсказки не попадали откаченные вещи.
+ */
+@Slf4j
+@Component
+public class ItemNameIndex {
+    private static final String SELECT_AVAILABLE = "select i.id, i.name from items i join users u on u.id = i.owner_id " +
+            "where i.is_available = true and u.deleted = false";
+    private static final char KEY_SEPARATOR = '\u0000';
+    // Примерная стоимость одной записи: узел и индексные уровни skip-list, заголовки строки и массива.
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+    private final ConcurrentSkipListMap<String, ItemSuggestionDto> terms = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Long, List<String>> keysByItem = new ConcurrentHashMap<>();
+    private final Set<Long> updatedDuringRebuild = ConcurrentHashMap.newKeySet();
+    private final AtomicLong estimatedBytes = new AtomicLong();
+    private volatile boolean rebuilding;
+
+    public ItemNameIndex(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry, ShardRouter shardRouter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+        meterRegistry.gauge("shareit.items.suggest.entries", terms, Map::size);
+        meterRegistry.gauge("shareit.items.suggest.memory.bytes", estimatedBytes);
+    }
+
+    public List<ItemSuggestionDto> suggest(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, ItemSuggestionDto> result = new LinkedHashMap<>();
+        for (ItemSuggestionDto suggestion : terms.subMap(normalized, normalized + Character.MAX_VALUE).values()) {
+            result.putIfAbsent(suggestion.getId(), suggestion);
+            if (result.size() >= limit) {
+                break;
+            }
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    public void update(Long itemId, String name, boolean available) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            applyUpdate(itemId, name, available);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                applyUpdate(itemId, name, available);
+            }
+        });
+    }
+
+    /**
+     * Сразу убирает вещь из индекса. Вызывается после фиксации удаления или вне транзакции.
+     */
+    public void remove(Long itemId) {
+        applyUpdate(itemId, null, false);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildInBackground() {
+        CompletableFuture.runAsync(this::rebuild);
+    }
+
+    void rebuild() {
+        rebuilding = true;
+        try {
+            shardRouter.forEachShard(() -> jdbcTemplate.query(SELECT_AVAILABLE, rs -> {
+                apply(rs.getLong("id"), rs.getString("name"), true, true);
+            }));
+            log.info("Индекс подсказок построен: {} ключей, ~{} КБ", terms.size(), estimatedBytes.get() / 1024);
+        } catch (RuntimeException e) {
+            log.error("Не удалось построить индекс подсказок", e);
+        } finally {
+            rebuilding = false;
+            updatedDuringRebuild.clear();
+        }
+    }
+
+    private void applyUpdate(Long itemId, String name, boolean available) {
+        if (rebuilding) {
+            updatedDuringRebuild.add(itemId);
+        }
+        apply(itemId, name, available, false);
+    }
+
+    private void apply(Long itemId, String name, boolean available, boolean fromRebuild) {
+        keysByItem.compute(itemId, (id, oldKeys) -> {
+            // Изменение, пришедшее во время перестроения, новее прочитанной из БД строки.
+            if (fromRebuild && updatedDuringRebuild.contains(id)) {
+                return oldKeys;
+            }
+            if (oldKeys != null) {
+                oldKeys.forEach(key -> {
+                    terms.remove(key);
+                    estimatedBytes.addAndGet(-sizeOf(key));
+                });
+            }
+            if (!available || name == null || name.isBlank()) {
+                return null;
+            }
+
+            ItemSuggestionDto suggestion = new ItemSuggestionDto(id, name);
+            List<String> keys = new ArrayList<>();
+            for (String term : termsOf(name)) {
+                String key = term + KEY_SEPARATOR + id;
+                terms.put(key, suggestion);
+                estimatedBytes.addAndGet(sizeOf(key));
+                keys.add(key);
+            }
+            return keys;
+        });
+    }
+
+    private Set<String> termsOf(String name) {
+        String normalized = normalize(name);
+        Set<String> result = new LinkedHashSet<>();
+        result.add(normalized);
+        for (String token : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                result.add(token);
+            }
+        }
+        return result;
+    }
+
+    private String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private long sizeOf(String key) {
+        return ENTRY_OVERHEAD_BYTES + 2L * key.length();
+    }
+}
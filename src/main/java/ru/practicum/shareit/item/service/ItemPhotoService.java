@@ -0,0 +1,11 @@
+package ru.practicum.shareit.item.service;
+
+import ru.practicum.shareit.item.dto.ItemPhotoDto;
+
+import java.io.InputStream;
+
+public interface ItemPhotoService {
+    ItemPhotoDto addPhoto(Long itemId, Long ownerId, String contentType, InputStream content);
+
+    PhotoFile getPhoto(Long itemId, String hash, boolean thumbnail);
+}
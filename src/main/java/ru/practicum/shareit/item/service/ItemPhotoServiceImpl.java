@@ -0,0 +1,107 @@
+package ru.practicum.shareit.item.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.exeptions.ForbiddenException;
+import ru.practicum.shareit.exeptions.NotFoundException;
+import ru.practicum.shareit.exeptions.ValidationException;
+import ru.practicum.shareit.item.dto.ItemPhotoDto;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.model.ItemPhoto;
+import ru.practicum.shareit.item.repository.ItemPhotoRepository;
+import ru.practicum.shareit.item.repository.ItemRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+@Service
+@RequiredArgsConstructor
+public class ItemPhotoServiceImpl implements ItemPhotoService {
+    private static final Set<String> ALLOWED_TYPES = Set.of("image/jpeg", "image/png", "image/gif", "image/webp");
+    private static final String THUMBNAIL_TYPE = "image/jpeg";
+
+    private final ItemRepository itemRepository;
+    private final ItemPhotoRepository itemPhotoRepository;
+    private final PhotoStore photoStore;
+    private final ThumbnailGenerator thumbnailGenerator;
+    private final ItemViewCoalescer itemViewCoalescer;
+
+    @Value("${shareit.photos.max-bytes:10485760}")
+    private long maxBytes;
+
+    // Файл пишется вне транзакции: подключение к БД не занято, пока клиент передаёт тело запроса.
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ItemPhotoDto addPhoto(Long itemId, Long ownerId, String contentType, InputStream content) {
+        String type = contentType == null ? "" : contentType.split(";")[0].trim().toLowerCase();
+        if (!ALLOWED_TYPES.contains(type)) {
+            throw new ValidationException(String.format("Неподдерживаемый тип фото: %s", contentType));
+        }
+        Item item = itemRepository.findByIdAndOwnerDeletedFalse(itemId)
+                .orElseThrow(() -> new NotFoundException(String.format("Предмет с Id %d не найден.", itemId)));
+        if (!item.getOwner().getId().equals(ownerId)) {
+            throw new ForbiddenException("Добавлять фото может только владелец вещи");
+        }
+
+        PhotoStore.StoredPhoto stored = photoStore.save(content, maxBytes);
+        ItemPhoto photo = itemPhotoRepository.findByItemIdAndHash(itemId, stored.hash())
+                .orElseGet(() -> savePhoto(itemId, stored, type));
+        thumbnailGenerator.submit(stored.hash());
+        itemViewCoalescer.invalidate(itemId);
+        return toDto(photo);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PhotoFile getPhoto(Long itemId, String hash, boolean thumbnail) {
+        if (!PhotoStore.isValidHash(hash)) {
+            throw new NotFoundException(String.format("Фото %s не найдено", hash));
+        }
+        ItemPhoto photo = itemPhotoRepository.findByItemIdAndHash(itemId, hash)
+                .orElseThrow(() -> new NotFoundException(String.format("Фото %s не найдено", hash)));
+
+        if (thumbnail) {
+            Path thumbnailPath = photoStore.thumbnailPathOf(hash);
+            if (Files.exists(thumbnailPath)) {
+                return new PhotoFile(thumbnailPath, hash, THUMBNAIL_TYPE, size(thumbnailPath), true);
+            }
+        }
+        Path path = photoStore.pathOf(hash);
+        if (!Files.exists(path)) {
+            throw new NotFoundException(String.format("Файл фото %s отсутствует в хранилище", hash));
+        }
+        return new PhotoFile(path, hash, photo.getContentType(), photo.getSize(), false);
+    }
+
+    private ItemPhoto savePhoto(Long itemId, PhotoStore.StoredPhoto stored, String contentType) {
+        try {
+            return itemPhotoRepository.save(new ItemPhoto(null, itemId, stored.hash(), contentType, stored.size(),
+                    LocalDateTime.now()));
+        } catch (DataIntegrityViolationException e) {
+            // То же фото параллельно загрузили повторно.
+            return itemPhotoRepository.findByItemIdAndHash(itemId, stored.hash()).orElseThrow(() -> e);
+        }
+    }
+
+    private long size(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ItemPhotoDto toDto(ItemPhoto photo) {
+        return new ItemPhotoDto(photo.getHash(), String.format("/items/%d/photos/%s", photo.getItemId(), photo.getHash()),
+                photo.getContentType(), photo.getSize(), photo.getUploadedAt());
+    }
+}
@@ -0,0 +1,194 @@
+package ru.practicum.shareit.item.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.model.Item;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Ограниченный LRU-кэш результатов поиска вещей по нормализованному тексту запроса.
+ * Поиск ищет подстроку в названии и описании, поэтому запрос затрагивает вещь, только если
+ * каждая его триграмма встречается в её тексте. Обратный индекс «триграмма → запросы» по изменённой
+ * вещи находит кандидатов, а сброс получают лишь запросы, которым вещь соответствовала до или после изменения.
+ */
+@Component
+public class ItemSearchCache {
+    private static final int GRAM = 3;
+
+    private final Map<String, Entry> entries;
+    private final Map<String, Set<String>> queriesByGram = new HashMap<>();
+    // Запросы короче триграммы проверяются при каждом изменении.
+    private final Set<String> shortQueries = new HashSet<>();
+    private final Duration ttl;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter invalidations;
+    // Меняется при каждом сбросе: результат поиска, начатого до записи, не попадает в кэш.
+    private long generation;
+
+    public ItemSearchCache(MeterRegistry meterRegistry,
+                           @Value("${shareit.items.search-cache.max-entries:500}") int maxEntries,
+                           @Value("${shareit.items.search-cache.ttl:PT5M}") Duration ttl) {
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= maxEntries) {
+                    return false;
+                }
+                unindex(eldest.getKey());
+                return true;
+            }
+        };
+        this.hits = meterRegistry.counter("shareit.items.search.cache", "result", "hit");
+        this.misses = meterRegistry.counter("shareit.items.search.cache", "result", "miss");
+        this.invalidations = meterRegistry.counter("shareit.items.search.cache.invalidations");
+        meterRegistry.gauge("shareit.items.search.cache.entries", this, ItemSearchCache::size);
+    }
+
+    public static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    public List<ItemDto> get(String text, Supplier<List<ItemDto>> search) {
+        String query = normalize(text);
+        // % и _ в LIKE — шаблоны, совпадение с которыми нельзя проверить поиском подстроки.
+        if (query.indexOf('%') >= 0 || query.indexOf('_') >= 0) {
+            return search.get();
+        }
+        long startedAt;
+        synchronized (this) {
+            Entry entry = entries.get(query);
+            if (entry != null && entry.expiresAt() > System.nanoTime()) {
+                hits.increment();
+                return entry.result();
+            }
+            startedAt = generation;
+        }
+
+        misses.increment();
+        List<ItemDto> result = search.get();
+        synchronized (this) {
+            if (generation == startedAt) {
+                if (entries.put(query, new Entry(result, System.nanoTime() + ttl.toNanos())) == null) {
+                    index(query);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Снимок полей вещи, от которых зависит попадание в результаты поиска. Берётся до изменения.
+     */
+    public static Snapshot snapshot(Item item) {
+        return new Snapshot(item.getName(), item.getDescription(), Boolean.TRUE.equals(item.getAvailable()));
+    }
+
+    /**
+     * Сбрасывает после фиксации транзакции запросы, которым вещь соответствовала до или после изменения.
+     * Для новой вещи before равен null.
+     */
+    public void invalidate(Snapshot before, Snapshot after) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(before, after);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(before, after);
+            }
+        });
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+        queriesByGram.clear();
+        shortQueries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized void evict(Snapshot before, Snapshot after) {
+        generation++;
+        List<String> affected = new ArrayList<>();
+        for (Snapshot snapshot : new Snapshot[]{before, after}) {
+            if (snapshot == null || !snapshot.available()) {
+                continue;
+            }
+            String text = snapshot.text();
+            for (String query : candidates(text)) {
+                if (text.contains(query)) {
+                    affected.add(query);
+                }
+            }
+        }
+        for (String query : affected) {
+            if (entries.remove(query) != null) {
+                unindex(query);
+                invalidations.increment();
+            }
+        }
+    }
+
+    private Set<String> candidates(String text) {
+        Set<String> result = new HashSet<>(shortQueries);
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            Set<String> queries = queriesByGram.get(text.substring(i, i + GRAM));
+            if (queries != null) {
+                result.addAll(queries);
+            }
+        }
+        return result;
+    }
+
+    // Запрос индексируется по одной своей триграмме: если он входит в текст, то входит и она.
+    private void index(String query) {
+        if (query.length() < GRAM) {
+            shortQueries.add(query);
+        } else {
+            queriesByGram.computeIfAbsent(query.substring(0, GRAM), gram -> new HashSet<>()).add(query);
+        }
+    }
+
+    private void unindex(String query) {
+        if (query.length() < GRAM) {
+            shortQueries.remove(query);
+            return;
+        }
+        String gram = query.substring(0, GRAM);
+        Set<String> queries = queriesByGram.get(gram);
+        if (queries != null && queries.remove(query) && queries.isEmpty()) {
+            queriesByGram.remove(gram);
+        }
+    }
+
+    public record Snapshot(String name, String description, boolean available) {
+        // Название и описание проверяются по отдельности, как в запросе, а не склеенными.
+        String text() {
+            return normalize(name == null ? "" : name) + '\u0000' + normalize(description == null ? "" : description);
+        }
+    }
+
+    private record Entry(List<ItemDto> result, long expiresAt) {
+    }
+}
@@ -1,18 +1,33 @@
 package ru.practicum.shareit.item.service;
 
+import ru.practicum.shareit.fields.FieldSet;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemSuggestionDto;
 import ru.practicum.shareit.item.dto.ItemWithBookingsDto;
+import ru.practicum.shareit.item.dto.NearbyItemDto;
+import ru.practicum.shareit.item.dto.PopularItemDto;
 
 import java.util.List;
 
 public interface ItemService {
     ItemDto createItem(ItemDto itemDto, Long ownerId);
 
-    ItemWithBookingsDto getItemById(Long id, Long userId);
+    ItemWithBookingsDto getItemById(Long id, Long userId, FieldSet fields);
 
-    List<ItemWithBookingsDto> getItemsByOwnerId(Long ownerId);
+    List<ItemWithBookingsDto> getItemsByOwnerId(Long ownerId, FieldSet fields);
+
+    List<ItemWithBookingsDto> getItemsByIds(List<Long> ids, Long userId, FieldSet fields);
 
     ItemDto updateItem(Long itemId, ItemDto itemDto, Long ownerId);
 
     List<ItemDto> searchItems(String text);
+
+    List<ItemSuggestionDto> suggestItems(String prefix, int limit);
+
+    List<NearbyItemDto> searchNearbyItems(double latitude, double longitude, double radiusKm, String text,
+                                          int from, int size);
+
+    List<PopularItemDto> getPopularItems(String window, int limit);
+
+    List<ItemDto> getRentedItems(Long userId, int from, int size);
 }
\ No newline at end of file
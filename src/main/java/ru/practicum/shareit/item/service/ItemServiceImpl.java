@@ -1,165 +1,202 @@
 package ru.practicum.shareit.item.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import ru.practicum.shareit.booking.BookingStatus;
-import ru.practicum.shareit.booking.model.Booking;
-import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.model.CompletedRental;
+import ru.practicum.shareit.booking.repository.CompletedRentalRepository;
+import ru.practicum.shareit.booking.service.ItemBookingTimeline;
 import ru.practicum.shareit.exeptions.NotFoundException;
 import ru.practicum.shareit.exeptions.ValidationException;
+import ru.practicum.shareit.fields.FieldSet;
+import ru.practicum.shareit.item.GeoHash;
 import ru.practicum.shareit.item.ItemMapper;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemSuggestionDto;
 import ru.practicum.shareit.item.dto.ItemWithBookingsDto;
+import ru.practicum.shareit.item.dto.NearbyItemDto;
+import ru.practicum.shareit.item.dto.PopularItemDto;
 import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.model.ItemPhoto;
 import ru.practicum.shareit.item.repository.CommentRepository;
+import ru.practicum.shareit.item.repository.ItemPhotoRepository;
 import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.repository.NearbyItemRepository;
+import ru.practicum.shareit.sharding.ShardRouter;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class ItemServiceImpl implements ItemService {
+    private static final Pattern WINDOW_PATTERN = Pattern.compile("(\\d{1,4})([hHdD])");
+    private static final int MAX_POPULAR_LIMIT = 500;
+    private static final int MAX_SUGGEST_LIMIT = 50;
+    private static final int MAX_NEARBY_RADIUS_KM = 500;
+    private static final int MAX_NEARBY_WINDOW = 1000;
+    private static final int MAX_BATCH_IDS = 500;
+
     private final ItemRepository itemRepository;
     private final UserRepository userRepository;
-    private final BookingRepository bookingRepository;
+    private final CompletedRentalRepository completedRentalRepository;
     private final CommentRepository commentRepository;
+    private final ItemPhotoRepository itemPhotoRepository;
+    private final NearbyItemRepository nearbyItemRepository;
+    private final PopularItemsTracker popularItemsTracker;
+    private final ItemNameIndex itemNameIndex;
+    private final ItemViewCoalescer itemViewCoalescer;
+    private final ItemBookingTimeline itemBookingTimeline;
+    private final ItemSearchCache itemSearchCache;
+    private final ShardRouter shardRouter;
 
     @Override
     @Transactional
     public ItemDto createItem(ItemDto itemDto, Long ownerId) {
-        User owner = userRepository.findById(ownerId)
+        User owner = userRepository.findByIdAndDeletedFalse(ownerId)
                 .orElseThrow(() -> new NotFoundException(String.format("Владелец с ID %d не найден.",ownerId)));
 
         validateItemDto(itemDto);
+        validateLocation(itemDto.getLatitude(), itemDto.getLongitude());
 
         Item item = ItemMapper.toItem(itemDto);
         item.setOwner(owner);
         item.setAvailable(itemDto.getAvailable());
 
         Item savedItem = itemRepository.save(item);
+        itemNameIndex.update(savedItem.getId(), savedItem.getName(), savedItem.getAvailable());
+        itemSearchCache.invalidate(null, ItemSearchCache.snapshot(savedItem));
         return ItemMapper.toItemDto(savedItem);
     }
 
     @Override
-    public ItemWithBookingsDto getItemById(Long id, Long userId) {
-        Item item = itemRepository.findById(id)
+    @Transactional(readOnly = true)
+    public ItemWithBookingsDto getItemById(Long id, Long userId, FieldSet fields) {
+        Item item = itemRepository.findByIdAndOwnerDeletedFalse(id)
                 .orElseThrow(() -> new NotFoundException(String.format("Предмет с Id %d не найден.",id)));
         ItemWithBookingsDto itemWithBookingsDto = ItemMapper.toItemWithBookingsDto(item);
 
-        if (item.getOwner().getId().equals(userId)) {
-            LocalDateTime now = LocalDateTime.now();
-
-            List<Booking> lastBookings = bookingRepository.findLastBookingForItem(id, now);
-            if (!lastBookings.isEmpty()) {
-                Booking lastBooking = lastBookings.get(0);
-                itemWithBookingsDto.setLastBooking(new ItemWithBookingsDto.BookingInfo(
-                        lastBooking.getId(),
-                        lastBooking.getBooker().getId(),
-                        lastBooking.getStart(),
-                        lastBooking.getEnd()
-                ));
+        if (item.getOwner().getId().equals(userId) && fields.includesAny("lastBooking", "nextBooking")) {
+            ItemBookingTimeline.LastAndNext bookings = itemBookingTimeline.get(id);
+            if (fields.includes("lastBooking")) {
+                itemWithBookingsDto.setLastBooking(bookings.last());
             }
-
-            List<Booking> nextBookings = bookingRepository.findNextBookingForItem(id, now);
-            if (!nextBookings.isEmpty()) {
-                Booking nextBooking = nextBookings.get(0);
-                itemWithBookingsDto.setNextBooking(new ItemWithBookingsDto.BookingInfo(
-                        nextBooking.getId(),
-                        nextBooking.getBooker().getId(),
-                        nextBooking.getStart(),
-                        nextBooking.getEnd()
-                ));
+            if (fields.includes("nextBooking")) {
+                itemWithBookingsDto.setNextBooking(bookings.next());
             }
         }
 
-        List<Comment> comments = commentRepository.findByItemIdOrderByCreatedDesc(id);
-        List<CommentDto> commentDtos = comments.stream()
-                .map(this::convertToCommentDto)
-                .collect(Collectors.toList());
-        itemWithBookingsDto.setComments(commentDtos);
+        if (fields.includes("comments")) {
+            List<Comment> comments = commentRepository.findByItemIdOrderByCreatedDesc(id);
+            List<CommentDto> commentDtos = comments.stream()
+                    .map(this::convertToCommentDto)
+                    .collect(Collectors.toList());
+            itemWithBookingsDto.setComments(commentDtos);
+        }
+        if (fields.includes("photos")) {
+            itemWithBookingsDto.setPhotos(itemPhotoRepository.findHashesByItemId(id));
+        }
 
         return itemWithBookingsDto;
     }
 
     @Override
-    public List<ItemWithBookingsDto> getItemsByOwnerId(Long ownerId) {
-        if (!userRepository.existsById(ownerId)) {
+    @Transactional(readOnly = true)
+    public List<ItemWithBookingsDto> getItemsByOwnerId(Long ownerId, FieldSet fields) {
+        if (!userRepository.existsByIdAndDeletedFalse(ownerId)) {
             throw new NotFoundException(String.format("Пользователь с Id %d не найден", ownerId));
         }
 
-        List<Item> items = itemRepository.findByOwnerIdOrderById(ownerId);
-        List<Long> itemIds = items.stream().map(Item::getId).collect(Collectors.toList());
+        return toItemsWithBookings(itemRepository.findByOwnerIdOrderById(ownerId), ownerId, fields);
+    }
 
-        Map<Long, List<CommentDto>> commentsByItem = commentRepository.findByItemIdInOrderByCreatedDesc(itemIds)
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<ItemWithBookingsDto> getItemsByIds(List<Long> ids, Long userId, FieldSet fields) {
+        if (ids.size() > MAX_BATCH_IDS) {
+            throw new ValidationException(
+                    String.format("За один запрос можно получить не более %d вещей", MAX_BATCH_IDS));
+        }
+        Map<Long, ItemWithBookingsDto> byId = shardRouter.queryShardsOf(new LinkedHashSet<>(ids),
+                        shardIds -> toItemsWithBookings(
+                                itemRepository.findByIdInAndOwnerDeletedFalse(shardIds), userId, fields))
                 .stream()
-                .collect(Collectors.groupingBy(
-                        comment -> comment.getItem().getId(),
-                        Collectors.mapping(this::convertToCommentDto, Collectors.toList())
-                ));
+                .collect(Collectors.toMap(ItemWithBookingsDto::getId, dto -> dto));
+        // Несуществующие id пропускаются, остальные возвращаются в порядке запроса.
+        return ids.stream()
+                .distinct()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
 
-        LocalDateTime now = LocalDateTime.now();
-        Map<Long, Booking> lastBookingsByItem = new HashMap<>();
-        Map<Long, Booking> nextBookingsByItem = new HashMap<>();
+    // Собирает карточки вещей пакетными IN-запросами: комментарии, фото, последнее и следующее
+    // бронирования читаются по одному запросу на весь список. Бронирования видит только владелец вещи.
+    private List<ItemWithBookingsDto> toItemsWithBookings(List<Item> items, Long viewerId, FieldSet fields) {
+        if (items.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> itemIds = items.stream().map(Item::getId).collect(Collectors.toList());
+        List<Long> ownedIds = items.stream()
+                .filter(item -> item.getOwner().getId().equals(viewerId))
+                .map(Item::getId)
+                .collect(Collectors.toList());
 
-        for (Long itemId : itemIds) {
-            List<Booking> lastBookings = bookingRepository.findLastBookingForItem(itemId, now);
-            if (!lastBookings.isEmpty()) {
-                lastBookingsByItem.put(itemId, lastBookings.get(0));
-            }
+        Map<Long, List<CommentDto>> commentsByItem = fields.includes("comments")
+                ? commentRepository.findByItemIdInOrderByCreatedDesc(itemIds).stream()
+                        .collect(Collectors.groupingBy(
+                                comment -> comment.getItem().getId(),
+                                Collectors.mapping(this::convertToCommentDto, Collectors.toList())))
+                : Collections.emptyMap();
 
-            List<Booking> nextBookings = bookingRepository.findNextBookingForItem(itemId, now);
-            if (!nextBookings.isEmpty()) {
-                nextBookingsByItem.put(itemId, nextBookings.get(0));
-            }
-        }
+        Map<Long, List<String>> photosByItem = fields.includes("photos")
+                ? itemPhotoRepository.findByItemIdInOrderByUploadedAtAscIdAsc(itemIds).stream()
+                        .collect(Collectors.groupingBy(ItemPhoto::getItemId,
+                                Collectors.mapping(ItemPhoto::getHash, Collectors.toList())))
+                : Collections.emptyMap();
+
+        Map<Long, ItemBookingTimeline.LastAndNext> bookingsByItem =
+                ownedIds.isEmpty() || !fields.includesAny("lastBooking", "nextBooking")
+                        ? Collections.emptyMap()
+                        : itemBookingTimeline.get(ownedIds);
 
         return items.stream().map(item -> {
             ItemWithBookingsDto dto = ItemMapper.toItemWithBookingsDto(item);
-
-            Booking lastBooking = lastBookingsByItem.get(item.getId());
-            if (lastBooking != null) {
-                dto.setLastBooking(new ItemWithBookingsDto.BookingInfo(
-                        lastBooking.getId(),
-                        lastBooking.getBooker().getId(),
-                        lastBooking.getStart(),
-                        lastBooking.getEnd()
-                ));
+            ItemBookingTimeline.LastAndNext bookings = bookingsByItem.get(item.getId());
+            if (bookings != null) {
+                dto.setLastBooking(fields.includes("lastBooking") ? bookings.last() : null);
+                dto.setNextBooking(fields.includes("nextBooking") ? bookings.next() : null);
             }
-
-            Booking nextBooking = nextBookingsByItem.get(item.getId());
-            if (nextBooking != null) {
-                dto.setNextBooking(new ItemWithBookingsDto.BookingInfo(
-                        nextBooking.getId(),
-                        nextBooking.getBooker().getId(),
-                        nextBooking.getStart(),
-                        nextBooking.getEnd()
-                ));
+            dto.setComments(commentsByItem.getOrDefault(item.getId(), Collections.emptyList()));
+            if (fields.includes("photos")) {
+                dto.setPhotos(photosByItem.getOrDefault(item.getId(), Collections.emptyList()));
             }
-
-            List<CommentDto> itemComments = commentsByItem.getOrDefault(item.getId(), Collections.emptyList());
-            dto.setComments(itemComments);
-
             return dto;
         }).collect(Collectors.toList());
     }
 
+
     @Override
     @Transactional
     public ItemDto updateItem(Long itemId, ItemDto itemDto, Long ownerId) {
-        Item existingItem = itemRepository.findById(itemId)
+        Item existingItem = itemRepository.findByIdAndOwnerDeletedFalse(itemId)
                 .orElseThrow(() -> new NotFoundException(String.format("Предмет с Id %d не найден.", itemId)));
 
         if (!existingItem.getOwner().getId().equals(ownerId)) {
             throw new NotFoundException("Редактировать предмет может только её владелец.");
         }
+        ItemSearchCache.Snapshot before = ItemSearchCache.snapshot(existingItem);
 
         if (itemDto.getName() != null) {
             if (itemDto.getName().isBlank()) {
@@ -179,35 +216,143 @@ public class ItemServiceImpl implements ItemService {
             existingItem.setAvailable(itemDto.getAvailable());
         }
 
+        if (itemDto.getLatitude() != null || itemDto.getLongitude() != null) {
+            Double latitude = itemDto.getLatitude() != null ? itemDto.getLatitude() : existingItem.getLatitude();
+            Double longitude = itemDto.getLongitude() != null ? itemDto.getLongitude() : existingItem.getLongitude();
+            validateLocation(latitude, longitude);
+            ItemMapper.setLocation(existingItem, latitude, longitude);
+        }
+
         Item updatedItem = itemRepository.save(existingItem);
+        itemNameIndex.update(updatedItem.getId(), updatedItem.getName(), updatedItem.getAvailable());
+        itemViewCoalescer.invalidate(itemId);
+        itemSearchCache.invalidate(before, ItemSearchCache.snapshot(updatedItem));
         return ItemMapper.toItemDto(updatedItem);
     }
 
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public List<ItemDto> searchItems(String text) {
         if (text == null || text.isBlank()) {
             return Collections.emptyList();
         }
 
-        return itemRepository.searchAvailableItems(text).stream()
-                .map(ItemMapper::toItemDto)
+        return itemSearchCache.get(text, () -> shardRouter.queryAllShards(
+                () -> itemRepository.searchAvailableItems(text).stream()
+                        .map(ItemMapper::toItemDto)
+                        .collect(Collectors.toList())));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<ItemSuggestionDto> suggestItems(String prefix, int limit) {
+        if (limit <= 0 || limit > MAX_SUGGEST_LIMIT) {
+            throw new ValidationException(String.format("Некорректный размер выборки: %d", limit));
+        }
+        return itemNameIndex.suggest(prefix, limit);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<NearbyItemDto> searchNearbyItems(double latitude, double longitude, double radiusKm, String text,
+                                                 int from, int size) {
+        validateLocation(latitude, longitude);
+        if (radiusKm <= 0 || radiusKm > MAX_NEARBY_RADIUS_KM) {
+            throw new ValidationException(String.format("Радиус поиска должен быть от 0 до %d км", MAX_NEARBY_RADIUS_KM));
+        }
+        if (from < 0 || size <= 0 || from + size > MAX_NEARBY_WINDOW) {
+            throw new ValidationException(String.format("Некорректные параметры страницы: from=%d, size=%d", from, size));
+        }
+        String needle = text == null || text.isBlank() ? null : text.toLowerCase();
+        Set<String> cells = GeoHash.coveringCells(latitude, longitude, radiusKm);
+
+        // Каждый шард отдаёт не больше from + size ближайших вещей, общая страница собирается из них.
+        return shardRouter.queryAllShards(() -> nearbyItemRepository.findNearby(
+                        cells, latitude, longitude, radiusKm, needle, from + size))
+                .stream()
+                .sorted(Comparator.comparingDouble(NearbyItemDto::getDistanceKm).thenComparing(NearbyItemDto::getId))
+                .skip(from)
+                .limit(size)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<PopularItemDto> getPopularItems(String window, int limit) {
+        Duration duration = parseWindow(window);
+        if (limit <= 0 || limit > MAX_POPULAR_LIMIT) {
+            throw new ValidationException(String.format("Некорректный размер выборки: %d", limit));
+        }
+
+        List<PopularItemsTracker.ItemScore> scores = popularItemsTracker.top(duration, limit);
+        List<Long> itemIds = scores.stream()
+                .map(PopularItemsTracker.ItemScore::getItemId)
+                .collect(Collectors.toList());
+        Map<Long, Item> items = shardRouter.queryAllShards(() -> itemRepository.findByIdInAndOwnerDeletedFalse(itemIds))
+                .stream()
+                .collect(Collectors.toMap(Item::getId, item -> item));
+
+        return scores.stream()
+                .filter(score -> items.containsKey(score.getItemId()))
+                .map(score -> {
+                    Item item = items.get(score.getItemId());
+                    return new PopularItemDto(item.getId(), item.getName(), item.getDescription(),
+                            item.getAvailable(), score.getBookings(), score.getComments());
+                })
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<ItemDto> getRentedItems(Long userId, int from, int size) {
+        if (from < 0 || size <= 0) {
+            throw new ValidationException(String.format("Некорректные параметры страницы: from=%d, size=%d", from, size));
+        }
+        if (!userRepository.existsByIdAndDeletedFalse(userId)) {
+            throw new NotFoundException(String.format("Пользователь с Id %d не найден", userId));
+        }
+        LocalDateTime now = LocalDateTime.now();
+
+        return shardRouter.queryAllShards(() -> findRentedOnShard(userId, now, from + size)).stream()
+                .sorted(Comparator.comparing(RentedItem::completedAt).reversed()
+                        .thenComparing(rented -> rented.item().getId()))
+                .skip(from)
+                .limit(size)
+                .map(RentedItem::item)
                 .collect(Collectors.toList());
     }
 
+    private List<RentedItem> findRentedOnShard(Long userId, LocalDateTime now, int limit) {
+        List<CompletedRental> rentals = completedRentalRepository
+                .findByBookerIdAndFirstCompletedAtBeforeOrderByFirstCompletedAtDesc(userId, now, PageRequest.of(0, limit));
+        Map<Long, Item> items = itemRepository.findByIdInAndOwnerDeletedFalse(rentals.stream()
+                        .map(CompletedRental::getItemId)
+                        .collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(Item::getId, item -> item));
+        return rentals.stream()
+                .filter(rental -> items.containsKey(rental.getItemId()))
+                .map(rental -> new RentedItem(ItemMapper.toItemDto(items.get(rental.getItemId())),
+                        rental.getFirstCompletedAt()))
+                .collect(Collectors.toList());
+    }
+
+    private record RentedItem(ItemDto item, LocalDateTime completedAt) {
+    }
+
     @Transactional
     public CommentDto addComment(Long itemId, CommentDto commentDto, Long authorId) {
-        User author = userRepository.findById(authorId)
+        User author = userRepository.findByIdAndDeletedFalse(authorId)
                 .orElseThrow(() -> new NotFoundException(String.format("Пользователь с Id %d не найден", authorId)));
 
-        Item item = itemRepository.findById(itemId)
-                .orElseThrow(() -> new NotFoundException(String.format("Вещь с Id %d не найдена",itemId)));
-
-        List<Booking> userBookings = bookingRepository.findByItemIdAndBookerIdAndEndBeforeAndStatus(
-                itemId, authorId, LocalDateTime.now(), BookingStatus.APPROVED);
-
-        if (userBookings.isEmpty()) {
+        if (!itemRepository.existsByIdAndOwnerDeletedFalse(itemId)) {
+            throw new NotFoundException(String.format("Вещь с Id %d не найдена", itemId));
+        }
+        if (!completedRentalRepository.existsByBookerIdAndItemIdAndFirstCompletedAtBefore(
+                authorId, itemId, LocalDateTime.now())) {
             throw new ValidationException("Пользователь не брал эту вещь в аренду или аренда еще не завершена");
         }
+        Item item = itemRepository.getReferenceById(itemId);
 
         if (commentDto.getText() == null || commentDto.getText().isBlank()) {
             throw new ValidationException("Текст комментария не может быть пустым");
@@ -220,6 +365,8 @@ public class ItemServiceImpl implements ItemService {
         comment.setCreated(LocalDateTime.now());
 
         Comment savedComment = commentRepository.save(comment);
+        popularItemsTracker.recordComment(itemId);
+        itemViewCoalescer.invalidate(itemId);
         return convertToCommentDto(savedComment);
     }
 
@@ -232,6 +379,32 @@ public class ItemServiceImpl implements ItemService {
         return commentDto;
     }
 
+    private Duration parseWindow(String window) {
+        Matcher matcher = WINDOW_PATTERN.matcher(window == null ? "" : window.trim());
+        if (!matcher.matches()) {
+            throw new ValidationException(String.format("Некорректное окно: %s", window));
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        Duration duration = matcher.group(2).equalsIgnoreCase("d") ? Duration.ofDays(amount) : Duration.ofHours(amount);
+        if (duration.isZero() || duration.compareTo(PopularItemsTracker.MAX_WINDOW) > 0) {
+            throw new ValidationException(String.format("Окно должно быть от 1h до %dd",
+                    PopularItemsTracker.MAX_WINDOW.toDays()));
+        }
+        return duration;
+    }
+
+    private void validateLocation(Double latitude, Double longitude) {
+        if (latitude == null && longitude == null) {
+            return;
+        }
+        if (latitude == null || longitude == null) {
+            throw new ValidationException("Широта и долгота должны быть указаны вместе");
+        }
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new ValidationException("Некорректные координаты");
+        }
+    }
+
     private void validateItemDto(ItemDto itemDto) {
         if (itemDto.getName() == null || itemDto.getName().isBlank()) {
             throw new ValidationException("Название вещи не может быть пустым");
@@ -0,0 +1,174 @@
+package ru.practicum.shareit.item.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.exeptions.NotFoundException;
+import ru.practicum.shareit.fields.FieldSet;
+import ru.practicum.shareit.item.dto.ItemWithBookingsDto;
+import ru.practicum.shareit.item.repository.ItemRepository;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Объединяет одновременные одинаковые чтения карточки вещи: запросы с одним ключом
+ * (вещь, владелец или нет, набор полей) ждут одно вычисление, а результат ещё короткое время
+ * отдаётся из микрокэша. Владелец видит бронирования, поэтому его представление хранится отдельно.
+ */
+@Component
+public class ItemViewCoalescer {
+    private final ItemRepository itemRepository;
+    private final ConcurrentHashMap<ViewKey, CompletableFuture<ItemWithBookingsDto>> inFlight =
+            new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ViewKey, CachedView> cache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, CompletableFuture<Long>> ownerLookups = new ConcurrentHashMap<>();
+    private final Map<Long, Long> owners;
+    // Меняется при каждой инвалидации: вычисление, начатое до записи, не попадает в кэш.
+    private final AtomicLong generation = new AtomicLong();
+    private final Duration ttl;
+    private final int maxEntries;
+    private final Counter loaded;
+    private final Counter coalesced;
+    private final Counter cached;
+
+    public ItemViewCoalescer(ItemRepository itemRepository, MeterRegistry meterRegistry,
+                             @Value("${shareit.items.view-cache.ttl:PT1S}") Duration ttl,
+                             @Value("${shareit.items.view-cache.max-entries:10000}") int maxEntries) {
+        this.itemRepository = itemRepository;
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        // Владелец вещи не меняется, поэтому его id хранится без срока жизни, с вытеснением самых старых.
+        this.owners = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.loaded = meterRegistry.counter("shareit.items.view.requests", "source", "loaded");
+        this.coalesced = meterRegistry.counter("shareit.items.view.requests", "source", "coalesced");
+        this.cached = meterRegistry.counter("shareit.items.view.requests", "source", "cached");
+        meterRegistry.gauge("shareit.items.view.cache.entries", cache, Map::size);
+    }
+
+    public ItemWithBookingsDto getItem(Long itemId, Long userId, FieldSet fields,
+                                       Supplier<ItemWithBookingsDto> loader) {
+        ViewKey key = new ViewKey(itemId, ownerOf(itemId).equals(userId), fields.toString());
+
+        CachedView view = cache.get(key);
+        if (view != null && view.expiresAt() > System.nanoTime()) {
+            cached.increment();
+            return view.dto();
+        }
+
+        CompletableFuture<ItemWithBookingsDto> own = new CompletableFuture<>();
+        CompletableFuture<ItemWithBookingsDto> leader = inFlight.putIfAbsent(key, own);
+        if (leader != null) {
+            coalesced.increment();
+            return await(leader);
+        }
+
+        loaded.increment();
+        long startedAt = generation.get();
+        try {
+            ItemWithBookingsDto dto = loader.get();
+            store(key, dto, startedAt);
+            own.complete(dto);
+            return dto;
+        } catch (RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    /**
+     * Сбрасывает кэшированные представления вещи после фиксации текущей транзакции.
+     */
+    public void invalidate(Long itemId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(itemId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(itemId);
+            }
+        });
+    }
+
+    private void evict(Long itemId) {
+        generation.incrementAndGet();
+        cache.keySet().removeIf(key -> key.itemId().equals(itemId));
+    }
+
+    private void store(ViewKey key, ItemWithBookingsDto dto, long startedAt) {
+        long now = System.nanoTime();
+        if (cache.size() >= maxEntries) {
+            cache.values().removeIf(view -> view.expiresAt() <= now);
+        }
+        if (cache.size() < maxEntries && generation.get() == startedAt) {
+            cache.put(key, new CachedView(dto, now + ttl.toNanos()));
+        }
+    }
+
+    private Long ownerOf(Long itemId) {
+        synchronized (owners) {
+            Long ownerId = owners.get(itemId);
+            if (ownerId != null) {
+                return ownerId;
+            }
+        }
+
+        CompletableFuture<Long> own = new CompletableFuture<>();
+        CompletableFuture<Long> leader = ownerLookups.putIfAbsent(itemId, own);
+        if (leader != null) {
+            return await(leader);
+        }
+        try {
+            Long ownerId = itemRepository.findOwnerIdById(itemId)
+                    .orElseThrow(() -> new NotFoundException(String.format("Предмет с Id %d не найден.", itemId)));
+            synchronized (owners) {
+                owners.put(itemId, ownerId);
+            }
+            own.complete(ownerId);
+            return ownerId;
+        } catch (RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            ownerLookups.remove(itemId, own);
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> leader) {
+        try {
+            return leader.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание загрузки вещи прервано", e);
+        }
+    }
+
+    private record ViewKey(Long itemId, boolean owner, String fields) {
+    }
+
+    private record CachedView(ItemWithBookingsDto dto, long expiresAt) {
+    }
+}
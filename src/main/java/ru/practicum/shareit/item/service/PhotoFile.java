@@ -0,0 +1,9 @@
+package ru.practicum.shareit.item.service;
+
+import java.nio.file.Path;
+
+/**
+ * Файл фотографии, готовый к отдаче клиенту.
+ */
+public record PhotoFile(Path path, String hash, String contentType, long size, boolean thumbnail) {
+}
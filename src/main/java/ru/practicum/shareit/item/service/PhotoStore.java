@@ -0,0 +1,100 @@
+package ru.practicum.shareit.item.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.exeptions.ValidationException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Локальное хранилище файлов с адресацией по содержимому: файл лежит по пути, составленному из его SHA-256.
+ * Загрузка пишется во временный файл с подсчётом хеша на лету и затем атомарно переносится на место,
+ * поэтому одинаковые фотографии хранятся один раз, а частично записанный файл никогда не виден читателям.
+ */
+@Component
+public class PhotoStore {
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+    private final Path tmp;
+
+    public PhotoStore(@Value("${shareit.photos.dir:photos}") String dir) {
+        this.root = Paths.get(dir).toAbsolutePath().normalize();
+        this.tmp = root.resolve("tmp");
+    }
+
+    public StoredPhoto save(InputStream content, long maxBytes) {
+        try {
+            Files.createDirectories(tmp);
+            Path upload = Files.createTempFile(tmp, "upload-", ".part");
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                long size = 0;
+                try (OutputStream out = Files.newOutputStream(upload)) {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int read;
+                    while ((read = content.read(buffer)) != -1) {
+                        size += read;
+                        if (size > maxBytes) {
+                            throw new ValidationException(String.format("Размер фото превышает %d байт", maxBytes));
+                        }
+                        digest.update(buffer, 0, read);
+                        out.write(buffer, 0, read);
+                    }
+                }
+                if (size == 0) {
+                    throw new ValidationException("Файл фото пуст");
+                }
+
+                String hash = HexFormat.of().formatHex(digest.digest());
+                Path target = pathOf(hash);
+                if (!Files.exists(target)) {
+                    Files.createDirectories(target.getParent());
+                    Files.move(upload, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return new StoredPhoto(hash, size);
+            } finally {
+                Files.deleteIfExists(upload);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Path pathOf(String hash) {
+        if (!isValidHash(hash)) {
+            throw new IllegalArgumentException("Некорректный хеш фото: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    public Path thumbnailPathOf(String hash) {
+        Path original = pathOf(hash);
+        return original.resolveSibling(hash + ".thumb.jpg");
+    }
+
+    public Path tempDir() {
+        return tmp;
+    }
+
+    public static boolean isValidHash(String hash) {
+        return hash != null && HASH_PATTERN.matcher(hash).matches();
+    }
+
+    public record StoredPhoto(String hash, long size) {
+    }
+}
@@ -0,0 +1,201 @@
+package ru.practicum.shareit.item.service;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Скользящие счётчики подтверждённых бронирований и отзывов по вещам.
+ * События раскладываются по часовым корзинам в памяти, рейтинг за окно считается
+ * суммированием корзин и отбором top-K через кучу ограниченного размера.
+ * Корзины периодически сохраняются в item_popularity и поднимаются оттуда при старте.
+ * Узел добавляет в таблицу только прирост своих счётчиков с прошлого снимка, поэтому строки
+ * содержат сумму по всем узлам, и узлы не затирают данные друг друга.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PopularItemsTracker {
+    public static final Duration MAX_WINDOW = Duration.ofDays(30);
+
+    private static final String SELECT_SNAPSHOT =
+            "select item_id, bucket_start, bookings, comments from item_popularity where bucket_start >= ?";
+    private static final String DELETE_EXPIRED = "delete from item_popularity where bucket_start < ?";
+    private static final String ADD_TO_BUCKET =
+            "insert into item_popularity (item_id, bucket_start, bookings, comments) values (?, ?, ?, ?) " +
+            "on conflict (item_id, bucket_start) do update set " +
+            "bookings = item_popularity.bookings + excluded.bookings, " +
+            "comments = item_popularity.comments + excluded.comments";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ConcurrentSkipListMap<LocalDateTime, Bucket> buckets = new ConcurrentSkipListMap<>();
+
+    /**
+     * Учитывает бронирование после фиксации текущей транзакции: откаченное подтверждение не считается.
+     */
+    public void recordBooking(Long itemId) {
+        record(itemId, counters -> counters.bookings);
+    }
+
+    public void recordComment(Long itemId) {
+        record(itemId, counters -> counters.comments);
+    }
+
+    public List<ItemScore> top(Duration window, int limit) {
+        LocalDateTime from = currentBucket().minus(window).plusHours(1);
+        Map<Long, ItemScore> totals = new HashMap<>();
+        for (Bucket bucket : buckets.tailMap(from, true).values()) {
+            bucket.counters.forEach((itemId, counters) -> {
+                ItemScore score = totals.computeIfAbsent(itemId, id -> new ItemScore(id, 0, 0));
+                score.setBookings(score.getBookings() + counters.bookings.sum());
+                score.setComments(score.getComments() + counters.comments.sum());
+            });
+        }
+
+        PriorityQueue<ItemScore> heap = new PriorityQueue<>(limit + 1, Comparator.comparingLong(ItemScore::total));
+        for (ItemScore score : totals.values()) {
+            heap.offer(score);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+
+        List<ItemScore> result = new ArrayList<>(heap);
+        result.sort(Comparator.comparingLong(ItemScore::total).reversed().thenComparing(ItemScore::getItemId));
+        return result;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        LocalDateTime from = currentBucket().minus(MAX_WINDOW);
+        jdbcTemplate.query(SELECT_SNAPSHOT, rs -> {
+            Bucket bucket = buckets.computeIfAbsent(rs.getTimestamp("bucket_start").toLocalDateTime(),
+                    start -> new Bucket());
+            Counters counters = bucket.counters.computeIfAbsent(rs.getLong("item_id"), id -> new Counters());
+            counters.bookings.add(rs.getLong("bookings"));
+            counters.comments.add(rs.getLong("comments"));
+            // Загруженное уже есть в таблице, в снимок попадёт только прирост после старта.
+            counters.flushedBookings += rs.getLong("bookings");
+            counters.flushedComments += rs.getLong("comments");
+        }, from);
+        log.info("Счётчики популярности восстановлены из снимка: {} корзин", buckets.size());
+    }
+
+    @Scheduled(fixedDelayString = "${shareit.items.popular.snapshot-delay-ms:300000}")
+    public void snapshot() {
+        LocalDateTime horizon = currentBucket().minus(MAX_WINDOW);
+        ConcurrentNavigableMap<LocalDateTime, Bucket> expired = buckets.headMap(horizon);
+        expired.clear();
+
+        buckets.forEach((start, bucket) -> {
+            if (!bucket.dirty) {
+                return;
+            }
+            // Флаг сбрасывается до чтения сумм: увеличение, пришедшее после чтения, снова его выставит.
+            bucket.dirty = false;
+            List<Object[]> rows = new ArrayList<>();
+            List<Runnable> markFlushed = new ArrayList<>();
+            bucket.counters.forEach((itemId, counters) -> {
+                long bookings = counters.bookings.sum();
+                long comments = counters.comments.sum();
+                if (bookings == counters.flushedBookings && comments == counters.flushedComments) {
+                    return;
+                }
+                rows.add(new Object[]{itemId, start, bookings - counters.flushedBookings,
+                        comments - counters.flushedComments});
+                markFlushed.add(() -> {
+                    counters.flushedBookings = bookings;
+                    counters.flushedComments = comments;
+                });
+            });
+            if (rows.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(ADD_TO_BUCKET, rows));
+            } catch (RuntimeException e) {
+                bucket.dirty = true;
+                throw e;
+            }
+            markFlushed.forEach(Runnable::run);
+        });
+        jdbcTemplate.update(DELETE_EXPIRED, horizon);
+    }
+
+    private void record(Long itemId, Function<Counters, LongAdder> counter) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            increment(itemId, counter);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                increment(itemId, counter);
+            }
+        });
+    }
+
+    private void increment(Long itemId, Function<Counters, LongAdder> counter) {
+        Bucket bucket = buckets.computeIfAbsent(currentBucket(), start -> new Bucket());
+        counter.apply(bucket.counters.computeIfAbsent(itemId, id -> new Counters())).increment();
+        // Флаг выставляется после увеличения, чтобы снимок, сбросивший его, уже видел новое значение.
+        bucket.dirty = true;
+    }
+
+    private LocalDateTime currentBucket() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+    }
+
+    private static class Bucket {
+        final ConcurrentHashMap<Long, Counters> counters = new ConcurrentHashMap<>();
+        volatile boolean dirty;
+    }
+
+    private static class Counters {
+        final LongAdder bookings = new LongAdder();
+        final LongAdder comments = new LongAdder();
+        // Сколько уже добавлено в item_popularity. Меняется только при загрузке и в снимке.
+        volatile long flushedBookings;
+        volatile long flushedComments;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class ItemScore {
+        Long itemId;
+        long bookings;
+        long comments;
+
+        public long total() {
+            return bookings + comments;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package ru.practicum.shareit.item.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Строит уменьшенные копии загруженных фото в фоне, чтобы загрузка не ждала обработки изображения.
+ * Пул и очередь ограничены: при переполнении задача отбрасывается, а клиенту отдаётся оригинал.
+ */
+@Slf4j
+@Component
+public class ThumbnailGenerator {
+    private static final long MAX_PIXELS = 50_000_000L;
+
+    private final PhotoStore photoStore;
+    private final ThreadPoolExecutor executor;
+    private final Counter generated;
+    private final Counter rejected;
+    private final int thumbnailSize;
+
+    public ThumbnailGenerator(PhotoStore photoStore, MeterRegistry meterRegistry,
+                              @Value("${shareit.photos.thumbnail.size:320}") int thumbnailSize,
+                              @Value("${shareit.photos.thumbnail.threads:2}") int threads,
+                              @Value("${shareit.photos.thumbnail.queue-capacity:100}") int queueCapacity) {
+        this.photoStore = photoStore;
+        this.thumbnailSize = thumbnailSize;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity));
+        this.generated = meterRegistry.counter("shareit.items.photos.thumbnails", "result", "generated");
+        this.rejected = meterRegistry.counter("shareit.items.photos.thumbnails", "result", "rejected");
+        meterRegistry.gauge("shareit.items.photos.thumbnails.queue", executor.getQueue(), queue -> queue.size());
+    }
+
+    public void submit(String hash) {
+        try {
+            executor.execute(() -> generate(hash));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            log.warn("Очередь миниатюр переполнена, миниатюра для {} не построена", hash);
+        }
+    }
+
+    private void generate(String hash) {
+        Path thumbnail = photoStore.thumbnailPathOf(hash);
+        if (Files.exists(thumbnail)) {
+            return;
+        }
+        try {
+            BufferedImage original = read(photoStore.pathOf(hash));
+            if (original == null) {
+                return;
+            }
+
+            double scale = Math.min(1.0, (double) thumbnailSize / Math.max(original.getWidth(), original.getHeight()));
+            int width = Math.max(1, (int) Math.round(original.getWidth() * scale));
+            int height = Math.max(1, (int) Math.round(original.getHeight() * scale));
+            BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = scaled.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(original, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+
+            Files.createDirectories(photoStore.tempDir());
+            Path tmp = Files.createTempFile(photoStore.tempDir(), "thumb-", ".jpg");
+            try {
+                ImageIO.write(scaled, "jpg", tmp.toFile());
+                Files.move(tmp, thumbnail, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            generated.increment();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось построить миниатюру для {}", hash, e);
+        }
+    }
+
+    // Размер проверяется по заголовку до декодирования, чтобы маленький файл не развернулся в гигабайты.
+    private BufferedImage read(Path path) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(path.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_PIXELS) {
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
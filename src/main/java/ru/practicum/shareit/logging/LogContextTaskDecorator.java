@@ -0,0 +1,73 @@
+package ru.practicum.shareit.logging;
+
+import org.slf4j.MDC;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Переносит MDC и признак трассировки SQL из потока запроса в поток, где выполняется его задача.
+ * Spring Boot применяет декоратор к applicationTaskExecutor, на котором MVC выполняет
+ * StreamingResponseBody, а ShardRouter оборачивает им запросы к шардам через propagate.
+ */
+@Component
+public class LogContextTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        Context context = Context.capture();
+        return () -> {
+            Context previous = context.apply();
+            try {
+                runnable.run();
+            } finally {
+                context.restore(previous);
+            }
+        };
+    }
+
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        Context context = Context.capture();
+        return () -> {
+            Context previous = context.apply();
+            try {
+                return task.call();
+            } finally {
+                context.restore(previous);
+            }
+        };
+    }
+
+    private record Context(Map<String, String> mdc, boolean traced) {
+        static Context capture() {
+            return new Context(MDC.getCopyOfContextMap(), SqlTrace.isTraced());
+        }
+
+        // Возвращает прежний контекст потока, чтобы restore вернул его после задачи.
+        Context apply() {
+            Context previous = capture();
+            setMdc(mdc);
+            if (traced && !previous.traced()) {
+                SqlTrace.begin();
+            }
+            return previous;
+        }
+
+        void restore(Context previous) {
+            if (traced && !previous.traced()) {
+                SqlTrace.end();
+            }
+            setMdc(previous.mdc());
+        }
+
+        private static void setMdc(Map<String, String> values) {
+            if (values == null) {
+                MDC.clear();
+            } else {
+                MDC.setContextMap(values);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package ru.practicum.shareit.logging;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Признак трассировки SQL и транзакций для текущего потока запроса. Общий для веб-фильтра
+ * и SqlTraceTurboFilter, который создаёт logback, а не Spring, поэтому состояние статическое.
+ * Пока ни один запрос не трассируется, проверка сводится к чтению одного счётчика.
+ */
+public final class SqlTrace {
+    private static final ThreadLocal<Boolean> CURRENT = new ThreadLocal<>();
+    private static final AtomicInteger ACTIVE = new AtomicInteger();
+
+    private SqlTrace() {
+    }
+
+    public static void begin() {
+        CURRENT.set(Boolean.TRUE);
+        ACTIVE.incrementAndGet();
+    }
+
+    public static void end() {
+        CURRENT.remove();
+        ACTIVE.decrementAndGet();
+    }
+
+    /**
+     * Трассируется ли текущий поток, без быстрой проверки счётчика. Нужен для переноса признака в другие потоки.
+     */
+    public static boolean isTraced() {
+        return CURRENT.get() != null;
+    }
+
+    public static boolean isActive() {
+        return ACTIVE.get() > 0 && CURRENT.get() != null;
+    }
+}
@@ -0,0 +1,43 @@
+package ru.practicum.shareit.logging;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.exeptions.NotFoundException;
+import ru.practicum.shareit.logging.SqlTraceRegistry.Rule;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * /actuator/sqltrace: включение трассировки SQL и транзакций для пользователя
+ * (POST /actuator/sqltrace/{userId} с sampleRate и duration), отключение (DELETE) и список правил.
+ */
+@Component
+@Endpoint(id = "sqltrace")
+@RequiredArgsConstructor
+public class SqlTraceEndpoint {
+    private final SqlTraceRegistry sqlTraceRegistry;
+
+    @ReadOperation
+    public List<Rule> rules() {
+        return sqlTraceRegistry.list();
+    }
+
+    @WriteOperation
+    public Rule enable(@Selector Long userId, @Nullable Double sampleRate, @Nullable Duration duration) {
+        return sqlTraceRegistry.enable(userId, sampleRate, duration);
+    }
+
+    @DeleteOperation
+    public void disable(@Selector Long userId) {
+        if (!sqlTraceRegistry.disable(userId)) {
+            throw new NotFoundException(String.format("Трассировка для пользователя %d не включена", userId));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.practicum.shareit.logging;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.MDC;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Включает трассировку SQL и транзакций на время обработки выбранного запроса. Сообщения трассы
+ * помечаются в MDC ключами sqlTrace и userId, чтобы их можно было отобрать в JSON-логе.
+ */
+@Component
+@RequiredArgsConstructor
+public class SqlTraceFilter extends OncePerRequestFilter {
+    private static final String USER_ID_HEADER = "X-Sharer-User-Id";
+
+    private final SqlTraceRegistry sqlTraceRegistry;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String header = request.getHeader(USER_ID_HEADER);
+        if (!sqlTraceRegistry.shouldTrace(parseUserId(header))) {
+            chain.doFilter(request, response);
+            return;
+        }
+        SqlTrace.begin();
+        MDC.put("sqlTrace", "true");
+        if (header != null) {
+            MDC.put("userId", header);
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            MDC.remove("sqlTrace");
+            MDC.remove("userId");
+            SqlTrace.end();
+        }
+    }
+
+    // Некорректный заголовок отклонит контроллер, здесь такой запрос просто не трассируется по пользователю.
+    private Long parseUserId(String header) {
+        if (header == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(header.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ru.practicum.shareit.logging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.exeptions.ValidationException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Правила выборочной трассировки: для пользователя трассируется доля его запросов sampleRate
+ * до истечения срока правила. Для запросов остальных пользователей действует общая доля
+ * shareit.logging.sql-trace.sample-rate, по умолчанию нулевая.
+ */
+@Component
+public class SqlTraceRegistry {
+    private final Map<Long, Rule> rules = new ConcurrentHashMap<>();
+    private final double defaultSampleRate;
+    private final Duration defaultDuration;
+    private final Counter traced;
+
+    public SqlTraceRegistry(MeterRegistry meterRegistry,
+                            @Value("${shareit.logging.sql-trace.sample-rate:0}") double defaultSampleRate,
+                            @Value("${shareit.logging.sql-trace.default-duration:PT15M}") Duration defaultDuration) {
+        this.defaultSampleRate = defaultSampleRate;
+        this.defaultDuration = defaultDuration;
+        this.traced = meterRegistry.counter("shareit.logging.sql-trace.requests");
+        meterRegistry.gauge("shareit.logging.sql-trace.rules", rules, Map::size);
+    }
+
+    public boolean shouldTrace(Long userId) {
+        double sampleRate = defaultSampleRate;
+        if (userId != null && !rules.isEmpty()) {
+            Rule rule = rules.get(userId);
+            if (rule != null) {
+                if (rule.expiresAt().isAfter(Instant.now())) {
+                    sampleRate = rule.sampleRate();
+                } else {
+                    rules.remove(userId, rule);
+                }
+            }
+        }
+        if (sampleRate <= 0 || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return false;
+        }
+        traced.increment();
+        return true;
+    }
+
+    public Rule enable(Long userId, Double sampleRate, Duration duration) {
+        double rate = sampleRate == null ? 1.0 : sampleRate;
+        if (rate <= 0 || rate > 1) {
+            throw new ValidationException("Доля трассируемых запросов должна быть в диапазоне (0, 1]");
+        }
+        if (duration != null && (duration.isNegative() || duration.isZero())) {
+            throw new ValidationException("Срок трассировки должен быть положительным");
+        }
+        Rule rule = new Rule(userId, rate, Instant.now().plus(duration == null ? defaultDuration : duration));
+        rules.put(userId, rule);
+        return rule;
+    }
+
+    public boolean disable(Long userId) {
+        return rules.remove(userId) != null;
+    }
+
+    public List<Rule> list() {
+        Instant now = Instant.now();
+        rules.values().removeIf(rule -> !rule.expiresAt().isAfter(now));
+        return List.copyOf(rules.values());
+    }
+
+    public record Rule(Long userId, double sampleRate, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,38 @@
+package ru.practicum.shareit.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пропускает сообщения перечисленных логгеров любого уровня, если текущий запрос трассируется.
+ * Уровни самих логгеров остаются INFO, так что в остальных запросах SQL и трассы транзакций
+ * не формируются вовсе. Логгеры задаются элементами logger в logback-spring.xml.
+ */
+public class SqlTraceTurboFilter extends TurboFilter {
+    private final List<String> loggers = new ArrayList<>();
+
+    public void addLogger(String logger) {
+        loggers.add(logger);
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params,
+                              Throwable t) {
+        if (!SqlTrace.isActive()) {
+            return FilterReply.NEUTRAL;
+        }
+        String name = logger.getName();
+        for (String prefix : loggers) {
+            if (name.startsWith(prefix)) {
+                return FilterReply.ACCEPT;
+            }
+        }
+        return FilterReply.NEUTRAL;
+    }
+}
@@ -0,0 +1,57 @@
+package ru.practicum.shareit.profiling;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.profiling.JfrRecordings.RecordingInfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * /actuator/jfr: список записей, запуск (POST /actuator/jfr/{name} с settings и duration),
+ * остановка (DELETE) и выгрузка текущего содержимого записи, в том числе постоянной (GET /actuator/jfr/{name}).
+ * Файл выгрузки удаляется, как только его содержимое отправлено.
+ */
+@Component
+@Endpoint(id = "jfr")
+@RequiredArgsConstructor
+public class JfrEndpoint {
+    private final JfrRecordings jfrRecordings;
+
+    @ReadOperation
+    public List<RecordingInfo> recordings() {
+        return jfrRecordings.list();
+    }
+
+    @ReadOperation
+    public Resource snapshot(@Selector String name) {
+        return new FileSystemResource(jfrRecordings.snapshot(name)) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return Files.newInputStream(getFile().toPath(), StandardOpenOption.DELETE_ON_CLOSE);
+            }
+        };
+    }
+
+    @WriteOperation
+    public RecordingInfo start(@Selector String name, @Nullable String settings, @Nullable Duration duration) {
+        return jfrRecordings.start(name, settings, duration);
+    }
+
+    @DeleteOperation
+    public RecordingInfo stop(@Selector String name) {
+        return jfrRecordings.stop(name);
+    }
+}
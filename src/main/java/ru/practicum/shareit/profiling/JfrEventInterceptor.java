@@ -0,0 +1,142 @@
+package ru.practicum.shareit.profiling;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.repository.Repository;
+import ru.practicum.shareit.booking.dto.BookingDto;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Оборачивает вызовы сервисов и репозиториев в JFR-события. Пока ни одна запись не включает
+ * событие, вызов идёт напрямую, а поля события заполняются, только если оно будет сохранено.
+ */
+class JfrEventInterceptor implements MethodInterceptor {
+    private final Map<Class<?>, String> repositoryNames = new ConcurrentHashMap<>();
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        return invocation.getThis() instanceof Repository<?, ?>
+                ? repositoryQuery(invocation)
+                : serviceCall(invocation);
+    }
+
+    private Object serviceCall(MethodInvocation invocation) throws Throwable {
+        ServiceCallEvent event = new ServiceCallEvent();
+        if (!event.isEnabled()) {
+            return invocation.proceed();
+        }
+        event.begin();
+        Object result = null;
+        Throwable failure = null;
+        try {
+            result = invocation.proceed();
+            return result;
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.service = AopUtils.getTargetClass(invocation.getThis()).getSimpleName();
+                event.method = invocation.getMethod().getName();
+                event.bookingState = bookingState(invocation, result);
+                event.rows = failure == null ? rows(invocation.getMethod(), result) : 0;
+                event.error = failure == null ? null : failure.getClass().getSimpleName();
+                event.commit();
+            }
+        }
+    }
+
+    private Object repositoryQuery(MethodInvocation invocation) throws Throwable {
+        RepositoryQueryEvent event = new RepositoryQueryEvent();
+        if (!event.isEnabled()) {
+            return invocation.proceed();
+        }
+        event.begin();
+        Object result = null;
+        Throwable failure = null;
+        try {
+            result = invocation.proceed();
+            return result;
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.repository = repositoryName(invocation);
+                event.method = invocation.getMethod().getName();
+                event.rows = failure == null ? rows(invocation.getMethod(), result) : 0;
+                event.error = failure == null ? null : failure.getClass().getSimpleName();
+                event.commit();
+            }
+        }
+    }
+
+    // Параметр state у списков бронирований, иначе статус возвращённого бронирования.
+    private String bookingState(MethodInvocation invocation, Object result) {
+        Parameter[] parameters = invocation.getMethod().getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            if ("state".equals(parameters[i].getName()) && invocation.getArguments()[i] != null) {
+                return invocation.getArguments()[i].toString();
+            }
+        }
+        if (result instanceof BookingDto booking && booking.getStatus() != null) {
+            return booking.getStatus().name();
+        }
+        return null;
+    }
+
+    private int rows(Method method, Object result) {
+        if (method.getReturnType() == void.class) {
+            return -1;
+        }
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Map<?, ?> map) {
+            return map.size();
+        }
+        if (result instanceof Slice<?> slice) {
+            return slice.getNumberOfElements();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        // Модифицирующие запросы возвращают число изменённых строк.
+        if (result instanceof Number number && (method.getReturnType() == int.class
+                || method.getReturnType() == Integer.class)) {
+            return number.intValue();
+        }
+        return 1;
+    }
+
+    // У вызова через прокси Spring Data целевой класс — SimpleJpaRepository, имя берётся из интерфейса приложения.
+    private String repositoryName(MethodInvocation invocation) {
+        if (!(invocation instanceof ProxyMethodInvocation proxyInvocation)) {
+            return AopUtils.getTargetClass(invocation.getThis()).getSimpleName();
+        }
+        Object proxy = proxyInvocation.getProxy();
+        return repositoryNames.computeIfAbsent(proxy.getClass(), proxyClass -> {
+            for (Class<?> type : AopProxyUtils.proxiedUserInterfaces(proxy)) {
+                if (Repository.class.isAssignableFrom(type) && !type.getName().startsWith("org.springframework.")) {
+                    return type.getSimpleName();
+                }
+            }
+            return invocation.getMethod().getDeclaringClass().getSimpleName();
+        });
+    }
+}
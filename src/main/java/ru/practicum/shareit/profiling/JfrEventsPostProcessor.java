@@ -0,0 +1,34 @@
+package ru.practicum.shareit.profiling;
+
+import org.springframework.aop.framework.AbstractAdvisingBeanPostProcessor;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.RootClassFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.item.service.ItemService;
+
+/**
+ * Добавляет JfrEventInterceptor в прокси BookingService, ItemService и репозиториев Spring Data
+ * так же, как это делают @Async и @Validated: к уже созданному прокси (транзакционному или репозитория)
+ * совет добавляется первым, поэтому событие сервиса включает и фиксацию транзакции.
+ */
+@Component
+public class JfrEventsPostProcessor extends AbstractAdvisingBeanPostProcessor {
+
+    // Свойство проверяется при запуске, а не через @ConditionalOnProperty: в AOT-сборке условия
+    // вычисляются при сборке. Без советника постпроцессор возвращает бины как есть.
+    public JfrEventsPostProcessor(@Value("${shareit.profiling.events.enabled:true}") boolean enabled) {
+        if (!enabled) {
+            return;
+        }
+        ComposablePointcut pointcut = new ComposablePointcut(new RootClassFilter(BookingService.class))
+                .union(new RootClassFilter(ItemService.class))
+                .union(new RootClassFilter(Repository.class));
+        this.advisor = new DefaultPointcutAdvisor(pointcut, new JfrEventInterceptor());
+        setBeforeExistingAdvisors(true);
+        setProxyTargetClass(true);
+    }
+}
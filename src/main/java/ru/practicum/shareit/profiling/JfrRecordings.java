@@ -0,0 +1,258 @@
+package ru.practicum.shareit.profiling;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.shareit.exeptions.ConflictException;
+import ru.practicum.shareit.exeptions.NotFoundException;
+import ru.practicum.shareit.exeptions.ValidationException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Записи Java Flight Recorder. Постоянная запись с настройками default идёт в фоне с ограничением
+ * по возрасту и размеру и сбрасывается в файл по медленному запросу, не чаще раза в dump-cooldown.
+ * Записи по требованию запускаются и останавливаются через actuator-эндпоинт jfr.
+ * В каталоге dir хранится не больше max-files файлов: после каждого нового файла самые старые удаляются,
+ * кроме файлов, в которые ещё пишут запущенные записи.
+ */
+@Slf4j
+@Component
+public class JfrRecordings {
+    public static final String CONTINUOUS = "continuous";
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final Map<String, Recording> recordings = new ConcurrentHashMap<>();
+    private final Path dir;
+    private final Duration dumpCooldown;
+    private final boolean continuousEnabled;
+    private final Duration continuousMaxAge;
+    private final DataSize continuousMaxSize;
+    private final int maxFiles;
+    private final AtomicLong nextDumpAt = new AtomicLong(Long.MIN_VALUE);
+    private final Counter slowDumps;
+    private volatile Recording continuous;
+
+    public JfrRecordings(MeterRegistry meterRegistry,
+                         @Value("${shareit.profiling.dir:jfr}") String dir,
+                         @Value("${shareit.profiling.dump-cooldown:PT5M}") Duration dumpCooldown,
+                         @Value("${shareit.profiling.continuous.enabled:true}") boolean continuousEnabled,
+                         @Value("${shareit.profiling.continuous.max-age:PT10M}") Duration continuousMaxAge,
+                         @Value("${shareit.profiling.continuous.max-size:100MB}") DataSize continuousMaxSize,
+                         @Value("${shareit.profiling.max-files:20}") int maxFiles) {
+        this.dir = Path.of(dir);
+        this.dumpCooldown = dumpCooldown;
+        this.continuousEnabled = continuousEnabled;
+        this.continuousMaxAge = continuousMaxAge;
+        this.continuousMaxSize = continuousMaxSize;
+        this.maxFiles = maxFiles;
+        this.slowDumps = meterRegistry.counter("shareit.profiling.slow-request.dumps");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startContinuous() {
+        if (!continuousEnabled) {
+            return;
+        }
+        Recording recording = new Recording(configuration("default"));
+        recording.setName(CONTINUOUS);
+        recording.setToDisk(true);
+        recording.setMaxAge(continuousMaxAge);
+        recording.setMaxSize(continuousMaxSize.toBytes());
+        recording.start();
+        continuous = recording;
+        log.info("Запущена постоянная JFR-запись: max-age {}, max-size {}", continuousMaxAge, continuousMaxSize);
+    }
+
+    /**
+     * Запускает запись по требованию. Без duration запись идёт до вызова stop,
+     * с duration останавливается сама. В обоих случаях результат пишется в файл в каталоге dir.
+     */
+    public RecordingInfo start(String name, String settings, Duration duration) {
+        if (!NAME.matcher(name).matches() || CONTINUOUS.equals(name)) {
+            throw new ValidationException("Имя записи должно состоять из латинских букв, цифр, - и _ "
+                    + "и не совпадать с " + CONTINUOUS);
+        }
+        if (duration != null && (duration.isNegative() || duration.isZero())) {
+            throw new ValidationException("Длительность записи должна быть положительной");
+        }
+        Recording recording = new Recording(configuration(settings == null ? "profile" : settings));
+        recording.setName(name);
+        recording.setToDisk(true);
+        if (duration != null) {
+            recording.setDuration(duration);
+        }
+        try {
+            recording.setDestination(createFile(name));
+            pruneOldFiles();
+        } catch (IOException e) {
+            recording.close();
+            throw new UncheckedIOException(e);
+        }
+        if (recordings.putIfAbsent(name, recording) != null) {
+            recording.close();
+            throw new ConflictException(String.format("Запись %s уже существует", name));
+        }
+        recording.start();
+        log.info("Запущена JFR-запись {} ({})", name, settings == null ? "profile" : settings);
+        return RecordingInfo.of(recording);
+    }
+
+    /**
+     * Останавливает запись по требованию и возвращает сведения о записанном файле.
+     */
+    public RecordingInfo stop(String name) {
+        Recording recording = recordings.remove(name);
+        if (recording == null) {
+            throw new NotFoundException(String.format("Запись %s не найдена", name));
+        }
+        // Запись с duration к этому моменту могла остановиться и записать файл сама.
+        if (recording.getState() == RecordingState.RUNNING || recording.getState() == RecordingState.DELAYED) {
+            recording.stop();
+        }
+        RecordingInfo info = RecordingInfo.of(recording);
+        recording.close();
+        log.info("Остановлена JFR-запись {}: {}", name, info.file());
+        return info;
+    }
+
+    public List<RecordingInfo> list() {
+        List<RecordingInfo> result = new ArrayList<>();
+        Recording current = continuous;
+        if (current != null) {
+            result.add(RecordingInfo.of(current));
+        }
+        recordings.values().forEach(recording -> result.add(RecordingInfo.of(recording)));
+        return result;
+    }
+
+    /**
+     * Сбрасывает текущее содержимое записи в новый файл, не останавливая её.
+     */
+    public Path snapshot(String name) {
+        Recording recording = CONTINUOUS.equals(name) ? continuous : recordings.get(name);
+        if (recording == null) {
+            throw new NotFoundException(String.format("Запись %s не найдена", name));
+        }
+        try {
+            Path file = createFile(name);
+            recording.dump(file);
+            pruneOldFiles();
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Сбрасывает постоянную запись в фоне после медленного запроса, если с прошлого сброса прошло
+     * больше dump-cooldown. Запрос не ждёт записи файла.
+     */
+    public void dumpAfterSlowRequest(String request, Duration elapsed) {
+        if (continuous == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        long allowedAt = nextDumpAt.get();
+        if ((allowedAt != Long.MIN_VALUE && now - allowedAt < 0)
+                || !nextDumpAt.compareAndSet(allowedAt, now + dumpCooldown.toNanos())) {
+            return;
+        }
+        slowDumps.increment();
+        Thread.ofVirtual().name("jfr-slow-request-dump").start(() -> {
+            try {
+                Path file = snapshot(CONTINUOUS);
+                log.warn("Запрос {} выполнялся {} мс, JFR-запись сохранена в {}", request, elapsed.toMillis(), file);
+            } catch (RuntimeException e) {
+                log.warn("Не удалось сохранить JFR-запись после медленного запроса {}", request, e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        recordings.keySet().forEach(this::stop);
+        Recording current = continuous;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private Configuration configuration(String settings) {
+        try {
+            return Configuration.getConfiguration(settings);
+        } catch (IOException | ParseException e) {
+            throw new ValidationException(String.format("Неизвестные настройки JFR: %s", settings));
+        }
+    }
+
+    private synchronized void pruneOldFiles() {
+        List<Path> active = recordings.values().stream()
+                .map(Recording::getDestination)
+                .filter(Objects::nonNull)
+                .map(Path::toAbsolutePath)
+                .toList();
+        try (Stream<Path> listing = Files.list(dir)) {
+            List<Path> files = listing.filter(file -> file.getFileName().toString().endsWith(".jfr"))
+                    .filter(file -> !active.contains(file.toAbsolutePath()))
+                    .sorted(Comparator.comparing(JfrRecordings::lastModified).reversed())
+                    .toList();
+            for (Path file : files.subList(Math.min(maxFiles, files.size()), files.size())) {
+                Files.deleteIfExists(file);
+                log.info("Удалён старый файл JFR-записи {}", file);
+            }
+        } catch (IOException e) {
+            log.warn("Не удалось удалить старые файлы JFR-записей из {}", dir, e);
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private Path createFile(String name) throws IOException {
+        Files.createDirectories(dir);
+        return dir.resolve(name + "-" + LocalDateTime.now().format(FILE_TIME) + ".jfr");
+    }
+
+    public record RecordingInfo(String name, String state, Instant startTime, Duration duration,
+                                Duration maxAge, long size, String file) {
+        static RecordingInfo of(Recording recording) {
+            Path destination = recording.getDestination();
+            return new RecordingInfo(recording.getName(), recording.getState().name(), recording.getStartTime(),
+                    recording.getDuration(), recording.getMaxAge(), recording.getSize(),
+                    destination == null ? null : destination.toString());
+        }
+    }
+}
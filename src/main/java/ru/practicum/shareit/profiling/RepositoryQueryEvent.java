@@ -0,0 +1,31 @@
+package ru.practicum.shareit.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Вызов метода репозитория Spring Data. Стек сохраняется, чтобы по медленному запросу
+ * был виден вызывающий сервис.
+ */
+@Name("ru.practicum.shareit.RepositoryQuery")
+@Label("Repository Query")
+@Category({"ShareIt", "Repository"})
+@Threshold("1 ms")
+class RepositoryQueryEvent extends Event {
+    @Label("Repository")
+    String repository;
+
+    @Label("Method")
+    String method;
+
+    @Label("Rows")
+    @Description("Число строк в результате или изменённых строк для модифицирующих запросов, -1 для void")
+    int rows;
+
+    @Label("Error")
+    String error;
+}
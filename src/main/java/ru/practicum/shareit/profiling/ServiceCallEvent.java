@@ -0,0 +1,34 @@
+package ru.practicum.shareit.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Вызов метода BookingService или ItemService.
+ */
+@Name("ru.practicum.shareit.ServiceCall")
+@Label("Service Call")
+@Category({"ShareIt", "Service"})
+@StackTrace(false)
+class ServiceCallEvent extends Event {
+    @Label("Service")
+    String service;
+
+    @Label("Method")
+    String method;
+
+    @Label("Booking State")
+    @Description("Параметр state для списков бронирований или статус возвращённого бронирования")
+    String bookingState;
+
+    @Label("Rows")
+    @Description("Число элементов в результате, -1 для void")
+    int rows;
+
+    @Label("Error")
+    String error;
+}
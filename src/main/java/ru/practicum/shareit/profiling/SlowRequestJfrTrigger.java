@@ -0,0 +1,49 @@
+package ru.practicum.shareit.profiling;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Измеряет время обработки запроса и при превышении порога сбрасывает постоянную JFR-запись,
+ * чтобы в файл попали последние минуты работы JVM до всплеска задержки.
+ * Запросы к actuator не учитываются: выгрузка записи сама по себе может быть долгой.
+ */
+@Component
+public class SlowRequestJfrTrigger extends OncePerRequestFilter {
+    private final JfrRecordings jfrRecordings;
+    private final long thresholdNanos;
+
+    public SlowRequestJfrTrigger(JfrRecordings jfrRecordings,
+                                 @Value("${shareit.profiling.slow-request-threshold:PT2S}") Duration threshold) {
+        this.jfrRecordings = jfrRecordings;
+        this.thresholdNanos = threshold.toNanos();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith(request.getContextPath() + "/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long startedAt = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            long elapsed = System.nanoTime() - startedAt;
+            if (elapsed > thresholdNanos) {
+                jfrRecordings.dumpAfterSlowRequest(request.getMethod() + " " + request.getRequestURI(),
+                        Duration.ofNanos(elapsed));
+            }
+        }
+    }
+}
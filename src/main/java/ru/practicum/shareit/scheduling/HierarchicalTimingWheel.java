@@ -0,0 +1,146 @@
+package ru.practicum.shareit.scheduling;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Иерархическое колесо таймеров. Первый уровень делится на ячейки по tickMillis, каждый следующий —
+ * на ячейки размером с весь предыдущий уровень и создаётся, только когда до него доходит срок задачи.
+ * Постановка и отмена задачи стоят O(1) при любом числе задач, а при сдвиге времени содержимое пройденной
+ * ячейки верхнего уровня переносится на нижние уровни, пока не наступит срок.
+ * Задача срабатывает в тик, которому принадлежит её срок, то есть раньше срока не более чем на tickMillis.
+ * Все методы синхронизированы, а наступившие задачи выполняет вызывающий advance уже вне блокировки.
+ */
+public class HierarchicalTimingWheel {
+    private final Level root;
+    private int size;
+
+    public HierarchicalTimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        this.root = new Level(tickMillis, wheelSize, startMillis);
+    }
+
+    /**
+     * Ставит задачу на момент deadlineMillis. Задача с уже наступившим сроком ставится
+     * на ближайший тик, так что вызывающему не нужно выполнять её самому.
+     */
+    public synchronized Timeout schedule(long deadlineMillis, Runnable task) {
+        Timeout timeout = new Timeout(Math.max(deadlineMillis, root.currentTime + root.tick), task);
+        root.add(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Сдвигает время колеса до nowMillis и возвращает задачи, срок которых наступил.
+     */
+    public synchronized List<Runnable> advance(long nowMillis) {
+        List<Runnable> due = new ArrayList<>();
+        root.advance(nowMillis, timeout -> {
+            if (!root.add(timeout)) {
+                due.add(timeout.task);
+                size--;
+            }
+        });
+        return due;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Дескриптор поставленной задачи.
+     */
+    public final class Timeout {
+        private final long deadline;
+        private final Runnable task;
+        // Ячейка, в которой сейчас лежит задача; null, если задача выполнена или отменена.
+        private Set<Timeout> bucket;
+
+        private Timeout(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        /**
+         * Снимает задачу с колеса. Возвращает false, если она уже сработала или была отменена.
+         */
+        public boolean cancel() {
+            synchronized (HierarchicalTimingWheel.this) {
+                if (bucket == null) {
+                    return false;
+                }
+                bucket.remove(this);
+                bucket = null;
+                size--;
+                return true;
+            }
+        }
+    }
+
+    private static class Level {
+        private final long tick;
+        private final int wheelSize;
+        private final long interval;
+        private final List<Set<Timeout>> buckets;
+        private final List<Timeout> expired = new ArrayList<>();
+        private long currentTime;
+        private Level overflow;
+
+        Level(long tick, int wheelSize, long startMillis) {
+            this.tick = tick;
+            this.wheelSize = wheelSize;
+            this.interval = tick * wheelSize;
+            this.currentTime = startMillis - Math.floorMod(startMillis, tick);
+            this.buckets = new ArrayList<>(wheelSize);
+            for (int i = 0; i < wheelSize; i++) {
+                buckets.add(new LinkedHashSet<>());
+            }
+        }
+
+        boolean add(Timeout timeout) {
+            if (timeout.deadline < currentTime + tick) {
+                return false;
+            }
+            if (timeout.deadline < currentTime + interval) {
+                Set<Timeout> bucket = buckets.get(indexOf(timeout.deadline));
+                bucket.add(timeout);
+                timeout.bucket = bucket;
+                return true;
+            }
+            if (overflow == null) {
+                overflow = new Level(interval, wheelSize, currentTime);
+            }
+            return overflow.add(timeout);
+        }
+
+        void advance(long now, Consumer<Timeout> reinsert) {
+            long steps = Math.min((now - currentTime) / tick, wheelSize);
+            for (long step = 1; step <= steps; step++) {
+                Set<Timeout> bucket = buckets.get(indexOf(currentTime + step * tick));
+                for (Timeout timeout : bucket) {
+                    timeout.bucket = null;
+                    expired.add(timeout);
+                }
+                bucket.clear();
+            }
+            if (now >= currentTime + tick) {
+                currentTime = now - Math.floorMod(now, tick);
+            }
+            if (overflow != null) {
+                overflow.advance(now, reinsert);
+            }
+            // Переносить задачи нужно после сдвига всех уровней, иначе они вернутся в пройденные ячейки.
+            List<Timeout> moved = new ArrayList<>(expired);
+            expired.clear();
+            moved.forEach(reinsert);
+        }
+
+        private int indexOf(long time) {
+            return (int) Math.floorMod(time / tick, (long) wheelSize);
+        }
+    }
+}
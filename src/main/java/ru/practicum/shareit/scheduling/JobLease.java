@@ -0,0 +1,31 @@
+package ru.practicum.shareit.scheduling;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "job_leases")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class JobLease {
+    @Id
+    @Column(name = "name", length = 100)
+    String name;
+
+    @Column(name = "owner", nullable = false, length = 200)
+    String owner;
+
+    @Column(name = "locked_until", nullable = false)
+    LocalDateTime lockedUntil;
+}
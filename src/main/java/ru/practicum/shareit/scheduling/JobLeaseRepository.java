@@ -0,0 +1,44 @@
+package ru.practicum.shareit.scheduling;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Аренда (lease) фоновой задачи в общей таблице job_leases.
+ * Пока аренда не истекла, задачу с тем же именем не запустит ни один другой узел.
+ */
+@Repository
+@RequiredArgsConstructor
+public class JobLeaseRepository {
+    private static final String EXTEND = "update job_leases set owner = ?, locked_until = ? " +
+            "where name = ? and (locked_until < ? or owner = ?)";
+    private static final String INSERT = "insert into job_leases (name, owner, locked_until) values (?, ?, ?)";
+    private static final String RELEASE = "update job_leases set locked_until = ? where name = ? and owner = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+
+    public boolean tryAcquire(String name, Duration ttl) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.plus(ttl);
+        if (jdbcTemplate.update(EXTEND, nodeId, until, name, now, nodeId) > 0) {
+            return true;
+        }
+        try {
+            return jdbcTemplate.update(INSERT, name, nodeId, until) > 0;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    public void release(String name) {
+        jdbcTemplate.update(RELEASE, LocalDateTime.now(), name, nodeId);
+    }
+}
@@ -0,0 +1,34 @@
+package ru.practicum.shareit.scheduling;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Позиция инкрементальной задачи: последняя обработанная пара (время, id).
+ */
+@Entity
+@Table(name = "job_watermarks")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class JobWatermark {
+    @Id
+    @Column(name = "name", length = 100)
+    String name;
+
+    @Column(name = "last_ts", nullable = false)
+    LocalDateTime lastTs;
+
+    @Column(name = "last_id", nullable = false)
+    Long lastId;
+}
@@ -0,0 +1,31 @@
+package ru.practicum.shareit.scheduling;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class JobWatermarkRepository {
+    public static final LocalDateTime ORIGIN = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final String SELECT = "select last_ts, last_id from job_watermarks where name = ?";
+    private static final String UPDATE = "update job_watermarks set last_ts = ?, last_id = ? where name = ?";
+    private static final String INSERT = "insert into job_watermarks (name, last_ts, last_id) values (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JobWatermark find(String name) {
+        List<JobWatermark> found = jdbcTemplate.query(SELECT, (rs, rowNum) -> new JobWatermark(name,
+                rs.getTimestamp("last_ts").toLocalDateTime(), rs.getLong("last_id")), name);
+        return found.isEmpty() ? new JobWatermark(name, ORIGIN, 0L) : found.get(0);
+    }
+
+    public void save(JobWatermark watermark) {
+        if (jdbcTemplate.update(UPDATE, watermark.getLastTs(), watermark.getLastId(), watermark.getName()) == 0) {
+            jdbcTemplate.update(INSERT, watermark.getName(), watermark.getLastTs(), watermark.getLastId());
+        }
+    }
+}
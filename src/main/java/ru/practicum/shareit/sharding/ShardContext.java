@@ -0,0 +1,24 @@
+package ru.practicum.shareit.sharding;
+
+/**
+ * Номер шарда, к которому направляются подключения текущего потока.
+ * Пустое значение означает шард 0, где живут глобальные данные — пользователи и запросы.
+ */
+public final class ShardContext {
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    static void set(Integer shard) {
+        if (shard == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(shard);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package ru.practicum.shareit.sharding;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.logging.LogContextTaskDecorator;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Выбирает шард для вызова и выполняет запросы, затрагивающие все шарды.
+ * Шард нужно выбрать до начала транзакции: подключение берётся при её открытии.
+ * Без включённого шардирования шард всего один, и все методы выполняют действие как есть.
+ */
+@Component
+public class ShardRouter {
+    private final int shardCount;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ShardRouter(PlatformTransactionManager transactionManager, DataSource dataSource,
+                       @Value("${shareit.sharding.enabled:false}") boolean enabled,
+                       @Value("${shareit.sharding.urls:}") List<String> urls) {
+        // В AOT-сборке условие ShardingConfig вычислено при сборке, и свойство при запуске его не меняет.
+        // Без этой проверки такая сборка молча работала бы с одной БД.
+        if (enabled != dataSource instanceof ShardRoutingDataSource) {
+            throw new IllegalStateException(String.format("shareit.sharding.enabled=%s, но приложение собрано с AOT "
+                    + "при shareit.sharding.enabled=%s: пересоберите его с нужным значением", enabled, !enabled));
+        }
+        this.shardCount = enabled ? Math.max(urls.size(), 1) : 1;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    public int shardOfOwner(Long ownerId) {
+        return Math.floorMod(ownerId, shardCount);
+    }
+
+    /**
+     * Шард вещи или бронирования по их id.
+     */
+    public int shardOfId(Long id) {
+        return Math.floorMod(id - 1, shardCount);
+    }
+
+    public <T> T onShard(int shard, Supplier<T> action) {
+        Integer previous = ShardContext.current();
+        ShardContext.set(shard);
+        try {
+            return action.get();
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+
+    public <T> T onOwnerShard(Long ownerId, Supplier<T> action) {
+        return onShard(shardOfOwner(ownerId), action);
+    }
+
+    public <T> T onShardOf(Long id, Supplier<T> action) {
+        return onShard(shardOfId(id), action);
+    }
+
+    /**
+     * Последовательно выполняет действие на каждом шарде. Используется фоновыми задачами.
+     */
+    public void forEachShard(Runnable action) {
+        for (int shard = 0; shard < shardCount; shard++) {
+            onShard(shard, () -> {
+                action.run();
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Параллельно выполняет действие на всех шардах, каждое в своём потоке, и возвращает результаты
+     * в порядке номеров шардов.
+     */
+    public <T> List<T> onAllShards(IntFunction<T> action) {
+        if (shardCount == 1) {
+            return Collections.singletonList(onShard(0, () -> action.apply(0)));
+        }
+
+        List<Future<T>> futures = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int target = shard;
+            // MDC и трассировка SQL запроса должны действовать и в потоках шардов.
+            futures.add(executor.submit(LogContextTaskDecorator.propagate(
+                    () -> onShard(target, () -> action.apply(target)))));
+        }
+        List<T> results = new ArrayList<>(shardCount);
+        for (Future<T> future : futures) {
+            results.add(await(future));
+        }
+        return results;
+    }
+
+    /**
+     * Выполняет запрос на каждом шарде в отдельной транзакции только для чтения и объединяет результаты.
+     */
+    public <T> List<T> queryAllShards(Supplier<? extends Collection<T>> query) {
+        List<T> merged = new ArrayList<>();
+        onAllShards(shard -> readOnlyTransaction.execute(status -> query.get())).forEach(merged::addAll);
+        return merged;
+    }
+
+    /**
+     * Выполняет запрос по списку id вещей или бронирований: каждый шард получает только свои id,
+     * шарды без них не опрашиваются.
+     */
+    public <T> List<T> queryShardsOf(Collection<Long> ids, Function<List<Long>, ? extends Collection<T>> query) {
+        Map<Integer, List<Long>> idsByShard = ids.stream().collect(Collectors.groupingBy(this::shardOfId));
+        List<T> merged = new ArrayList<>();
+        onAllShards(shard -> {
+            List<Long> shardIds = idsByShard.get(shard);
+            Collection<T> rows = shardIds == null
+                    ? Collections.emptyList()
+                    : readOnlyTransaction.execute(status -> query.apply(shardIds));
+            return rows;
+        }).forEach(merged::addAll);
+        return merged;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Запрос к шардам прерван", e);
+        }
+    }
+}
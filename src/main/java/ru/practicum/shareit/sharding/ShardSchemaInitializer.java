@@ -0,0 +1,37 @@
+package ru.practicum.shareit.sharding;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Создаёт схему на шарде по schema.sql и настраивает генерацию id вещей и бронирований так,
+ * чтобы по id можно было определить шард: на шарде k выдаются id, для которых (id - 1) mod n == k.
+ */
+final class ShardSchemaInitializer {
+    private static final List<String> STRIDED_TABLES = List.of("items", "bookings");
+    private static final String RESTART_IDENTITY =
+            "alter table %s alter column id set increment by %d restart with %d";
+
+    private ShardSchemaInitializer() {
+    }
+
+    static void initialize(DataSource dataSource, int shard, int shardCount) {
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        for (String table : STRIDED_TABLES) {
+            Long maxId = jdbcTemplate.queryForObject("select max(id) from " + table, Long.class);
+            long nextId = nextIdOnShard(maxId == null ? 0 : maxId, shard, shardCount);
+            jdbcTemplate.execute(String.format(RESTART_IDENTITY, table, shardCount, nextId));
+        }
+    }
+
+    static long nextIdOnShard(long maxId, int shard, int shardCount) {
+        long next = maxId + 1;
+        return next + Math.floorMod(shard - (next - 1), shardCount);
+    }
+}
@@ -0,0 +1,59 @@
+package ru.practicum.shareit.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Подключает несколько БД вместо одной. Вещи, бронирования и отзывы владельца хранятся на шарде
+ * owner_id mod n, пользователи создаются на шарде 0 и копируются на остальные.
+ * Схемой управляет schema.sql, поэтому Hibernate не должен создавать таблицы сам.
+ * При сборке с AOT (профиль startup) условие вычисляется во время сборки; ShardRouter останавливает запуск,
+ * если shareit.sharding.enabled при запуске с ним не совпадает.
+ */
+@Configuration
+@ConditionalOnProperty(name = "shareit.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+    private static final Set<String> SCHEMA_CHANGING_MODES = Set.of("create", "create-drop", "update");
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties,
+                                 @Value("${shareit.sharding.urls}") List<String> urls,
+                                 @Value("${spring.jpa.hibernate.ddl-auto:none}") String ddlAuto) {
+        if (SCHEMA_CHANGING_MODES.contains(ddlAuto)) {
+            throw new IllegalStateException(
+                    "При шардировании схема создаётся из schema.sql: укажите spring.jpa.hibernate.ddl-auto=none");
+        }
+        if (urls.isEmpty()) {
+            throw new IllegalStateException("Не указаны адреса шардов shareit.sharding.urls");
+        }
+
+        Map<Object, Object> shards = new HashMap<>();
+        for (int shard = 0; shard < urls.size(); shard++) {
+            HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(urls.get(shard))
+                    .build();
+            dataSource.setPoolName("shard-" + shard);
+            ShardSchemaInitializer.initialize(dataSource, shard, urls.size());
+            shards.put(shard, dataSource);
+        }
+
+        ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource();
+        routingDataSource.setTargetDataSources(shards);
+        routingDataSource.setDefaultTargetDataSource(shards.get(0));
+        routingDataSource.afterPropertiesSet();
+        return routingDataSource;
+    }
+}
@@ -0,0 +1,173 @@
+package ru.practicum.shareit.sharding;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.scheduling.JobLeaseRepository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Копирует пользователей с шарда 0 на остальные шарды, чтобы вещи, бронирования и отзывы на любом
+ * шарде ссылались на существующие строки users. Изменение пользователя записывает в outbox задачу
+ * для каждого шарда в той же транзакции. После фиксации задачи выполняются сразу, а неудачные
+ * повторяются по расписанию с растущей паузой, пока шард не станет доступен.
+ * На шард копируется текущее состояние строки с шарда 0, а не само изменение, поэтому задачи можно
+ * выполнять повторно и в любом порядке: более старую версию upsert не запишет поверх новой.
+ */
+@Slf4j
+@Component
+public class UserReplicator {
+    private static final String JOB_NAME = "user-replication";
+    private static final String ENQUEUE = "insert into user_replication_outbox (user_id, shard, attempts, " +
+            "next_attempt_at) values (?, ?, 0, ?)";
+    private static final String SELECT_DUE = "select id, user_id, shard, attempts from user_replication_outbox " +
+            "where next_attempt_at <= ? order by id limit ?";
+    private static final String SELECT_FOR_USER = "select id, user_id, shard, attempts " +
+            "from user_replication_outbox where user_id = ? order by id";
+    private static final String DELETE_TASK = "delete from user_replication_outbox where id = ?";
+    private static final String RESCHEDULE = "update user_replication_outbox set attempts = ?, next_attempt_at = ? " +
+            "where id = ?";
+    private static final String SELECT_USER = "select id, name, email, deleted, deleted_at, version from users " +
+            "where id = ?";
+    private static final String UPSERT_USER = "insert into users (id, name, email, deleted, deleted_at, version) " +
+            "values (?, ?, ?, ?, ?, ?) on conflict (id) do update set name = excluded.name, " +
+            "email = excluded.email, deleted = excluded.deleted, deleted_at = excluded.deleted_at, " +
+            "version = excluded.version where users.version <= excluded.version";
+    // Строки на шарде 0 уже нет только после окончательной очистки, которой всегда предшествует удаление.
+    private static final String MARK_DELETED = "update users set deleted = true, " +
+            "deleted_at = coalesce(deleted_at, ?) where id = ?";
+
+    private final ShardRouter shardRouter;
+    private final JdbcTemplate jdbcTemplate;
+    private final JobLeaseRepository jobLeaseRepository;
+    private final Counter failures;
+    private final int batchSize;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration lease;
+
+    public UserReplicator(ShardRouter shardRouter, JdbcTemplate jdbcTemplate, JobLeaseRepository jobLeaseRepository,
+                          MeterRegistry meterRegistry,
+                          @Value("${shareit.sharding.replication.batch-size:500}") int batchSize,
+                          @Value("${shareit.sharding.replication.initial-backoff:PT5S}") Duration initialBackoff,
+                          @Value("${shareit.sharding.replication.max-backoff:PT10M}") Duration maxBackoff,
+                          @Value("${shareit.sharding.replication.lease:PT5M}") Duration lease) {
+        this.shardRouter = shardRouter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.jobLeaseRepository = jobLeaseRepository;
+        this.failures = meterRegistry.counter("shareit.sharding.replication.failures");
+        this.batchSize = batchSize;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.lease = lease;
+    }
+
+    /**
+     * Ставит копирование пользователя на остальные шарды. Вызывается в транзакции, изменившей пользователя.
+     */
+    public void replicate(Long userId) {
+        if (shardRouter.shardCount() == 1) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (int shard = 1; shard < shardRouter.shardCount(); shard++) {
+            jdbcTemplate.update(ENQUEUE, userId, shard, now);
+        }
+        // В потоке транзакции к ресурсам ещё привязано подключение шарда 0, поэтому запись идёт из отдельного потока.
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                Thread.ofVirtual().name("user-replication").start(() -> {
+                    try {
+                        shardRouter.onShard(0, () -> {
+                            process(jdbcTemplate.query(SELECT_FOR_USER, UserReplicator::mapTask, userId));
+                            return null;
+                        });
+                    } catch (RuntimeException e) {
+                        log.warn("Копирование пользователя {} отложено до следующего повтора", userId, e);
+                    }
+                });
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${shareit.sharding.replication.retry-delay-ms:10000}")
+    public void retryPending() {
+        if (shardRouter.shardCount() == 1) {
+            return;
+        }
+        shardRouter.onShard(0, () -> {
+            if (!jobLeaseRepository.tryAcquire(JOB_NAME, lease)) {
+                return null;
+            }
+            try {
+                List<Task> tasks;
+                do {
+                    tasks = jdbcTemplate.query(SELECT_DUE, UserReplicator::mapTask, LocalDateTime.now(), batchSize);
+                    process(tasks);
+                } while (tasks.size() == batchSize);
+            } finally {
+                jobLeaseRepository.release(JOB_NAME);
+            }
+            return null;
+        });
+    }
+
+    // Выполняется на шарде 0: задачи и исходные строки пользователей читаются оттуда.
+    private void process(List<Task> tasks) {
+        for (Task task : tasks) {
+            try {
+                List<UserRow> users = jdbcTemplate.query(SELECT_USER, UserReplicator::mapUser, task.userId());
+                shardRouter.onShard(task.shard(), () -> users.isEmpty()
+                        ? jdbcTemplate.update(MARK_DELETED, LocalDateTime.now(), task.userId())
+                        : upsert(users.get(0)));
+                jdbcTemplate.update(DELETE_TASK, task.id());
+            } catch (RuntimeException e) {
+                failures.increment();
+                Duration backoff = backoff(task.attempts());
+                jdbcTemplate.update(RESCHEDULE, task.attempts() + 1, LocalDateTime.now().plus(backoff), task.id());
+                log.warn("Не удалось скопировать пользователя {} на шард {}, попытка {}, повтор через {}",
+                        task.userId(), task.shard(), task.attempts() + 1, backoff, e);
+            }
+        }
+    }
+
+    private int upsert(UserRow user) {
+        return jdbcTemplate.update(UPSERT_USER, user.id(), user.name(), user.email(), user.deleted(),
+                user.deletedAt(), user.version());
+    }
+
+    private Duration backoff(int attempts) {
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts, 20));
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+    private static Task mapTask(ResultSet rs, int rowNum) throws SQLException {
+        return new Task(rs.getLong("id"), rs.getLong("user_id"), rs.getInt("shard"), rs.getInt("attempts"));
+    }
+
+    private static UserRow mapUser(ResultSet rs, int rowNum) throws SQLException {
+        Timestamp deletedAt = rs.getTimestamp("deleted_at");
+        return new UserRow(rs.getLong("id"), rs.getString("name"), rs.getString("email"), rs.getBoolean("deleted"),
+                deletedAt == null ? null : deletedAt.toLocalDateTime(), rs.getLong("version"));
+    }
+
+    private record Task(long id, long userId, int shard, int attempts) {
+    }
+
+    private record UserRow(long id, String name, String email, boolean deleted, LocalDateTime deletedAt,
+                           long version) {
+    }
+}
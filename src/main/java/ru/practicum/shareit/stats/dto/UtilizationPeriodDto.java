@@ -0,0 +1,20 @@
+package ru.practicum.shareit.stats.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UtilizationPeriodDto {
+    LocalDate periodStart;
+    double bookedHours;
+    long approvals;
+    long rejections;
+}
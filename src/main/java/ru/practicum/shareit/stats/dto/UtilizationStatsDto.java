@@ -0,0 +1,26 @@
+package ru.practicum.shareit.stats.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UtilizationStatsDto {
+    LocalDate from;
+    LocalDate to;
+    String granularity;
+    double bookedHours;
+    long approvals;
+    long rejections;
+    Double approvalRate;
+    Double averageLeadTimeHours;
+    List<UtilizationPeriodDto> periods;
+}
@@ -0,0 +1,60 @@
+package ru.practicum.shareit.stats.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Дневной агрегат по вещи: забронированные минуты в этот день и решения владельца, принятые в этот день.
+ */
+@Entity
+@Table(name = "item_daily_stats", indexes = {
+        @Index(name = "idx_item_daily_stats_owner", columnList = "owner_id, stats_date")
+})
+@IdClass(ItemDailyStats.Key.class)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ItemDailyStats {
+    @Id
+    @Column(name = "item_id")
+    Long itemId;
+
+    @Id
+    @Column(name = "stats_date")
+    LocalDate statsDate;
+
+    @Column(name = "owner_id", nullable = false)
+    Long ownerId;
+
+    @Column(name = "booked_minutes", nullable = false)
+    long bookedMinutes;
+
+    @Column(name = "approvals", nullable = false)
+    long approvals;
+
+    @Column(name = "rejections", nullable = false)
+    long rejections;
+
+    @Column(name = "lead_time_minutes_sum", nullable = false)
+    long leadTimeMinutesSum;
+
+    @Column(name = "lead_time_samples", nullable = false)
+    long leadTimeSamples;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Key implements Serializable {
+        Long itemId;
+        LocalDate statsDate;
+    }
+}
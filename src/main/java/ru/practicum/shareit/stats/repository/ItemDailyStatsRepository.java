@@ -0,0 +1,27 @@
+package ru.practicum.shareit.stats.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import ru.practicum.shareit.stats.dto.DailyStatsRow;
+import ru.practicum.shareit.stats.model.ItemDailyStats;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface ItemDailyStatsRepository extends JpaRepository<ItemDailyStats, ItemDailyStats.Key> {
+    @Query("select new ru.practicum.shareit.stats.dto.DailyStatsRow(s.statsDate, sum(s.bookedMinutes), " +
+            "sum(s.approvals), sum(s.rejections), sum(s.leadTimeMinutesSum), sum(s.leadTimeSamples)) " +
+            "from ItemDailyStats s " +
+            "where s.itemId = ?1 and s.statsDate between ?2 and ?3 " +
+            "group by s.statsDate order by s.statsDate")
+    List<DailyStatsRow> findItemDailyStats(Long itemId, LocalDate from, LocalDate to);
+
+    @Query("select new ru.practicum.shareit.stats.dto.DailyStatsRow(s.statsDate, sum(s.bookedMinutes), " +
+            "sum(s.approvals), sum(s.rejections), sum(s.leadTimeMinutesSum), sum(s.leadTimeSamples)) " +
+            "from ItemDailyStats s " +
+            "where s.ownerId = ?1 and s.statsDate between ?2 and ?3 " +
+            "group by s.statsDate order by s.statsDate")
+    List<DailyStatsRow> findOwnerDailyStats(Long ownerId, LocalDate from, LocalDate to);
+}
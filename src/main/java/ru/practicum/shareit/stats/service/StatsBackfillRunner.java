@@ -0,0 +1,25 @@
+package ru.practicum.shareit.stats.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Полный пересчёт дневной статистики по истории бронирований.
+ * Запускается при старте приложения с аргументом --backfill-stats.
+ */
+@Component
+@RequiredArgsConstructor
+public class StatsBackfillRunner implements ApplicationRunner {
+    public static final String BACKFILL_OPTION = "backfill-stats";
+
+    private final StatsRollupJob statsRollupJob;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (args.containsOption(BACKFILL_OPTION)) {
+            statsRollupJob.backfill();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package ru.practicum.shareit.stats.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.scheduling.JobLeaseRepository;
+import ru.practicum.shareit.scheduling.JobWatermark;
+import ru.practicum.shareit.scheduling.JobWatermarkRepository;
+import ru.practicum.shareit.sharding.ShardRouter;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Поддерживает таблицу item_daily_stats.
+ * Инкрементальный режим читает бронирования, по которым владелец принял решение после сохранённой
+ * позиции (decided_at, id), и добавляет их вклад к дневным агрегатам в той же транзакции, в которой
+ * сдвигается позиция. Полный пересчёт (backfill) строит агрегаты заново по всей истории.
+ * decided_at ставит приложение до фиксации транзакции, а id выдаются не в порядке фиксации, поэтому
+ * задача берёт только решения старше safety-lag: иначе транзакция, зафиксированная после чтения более
+ * поздней строки, осталась бы позади позиции и не попала в агрегаты.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StatsRollupJob {
+    private static final String JOB_NAME = "item-daily-stats";
+    private static final String SELECT_DECIDED = "select b.id, b.item_id, i.owner_id, b.start_date, b.end_date, " +
+            "b.status, b.decided_at from bookings b join items i on b.item_id = i.id " +
+            "where (b.decided_at > ? or (b.decided_at = ? and b.id > ?)) and b.decided_at < ? " +
+            "order by b.decided_at, b.id limit ?";
+    private static final String SELECT_ALL_BOOKINGS = "select b.id, b.item_id, i.owner_id, b.start_date, " +
+            "b.end_date, b.status, b.decided_at from bookings b join items i on b.item_id = i.id " +
+            "where b.id > ? and (b.decided_at is null or b.decided_at < ?) order by b.id limit ?";
+    private static final String SELECT_ALL_ARCHIVED = "select b.id, b.item_id, i.owner_id, b.start_date, " +
+            "b.end_date, b.status, null as decided_at from bookings_archive b join items i on b.item_id = i.id " +
+            "where b.id > ? order by b.id limit ?";
+    private static final String SELECT_LAST_DECIDED =
+            "select decided_at, id from bookings where decided_at < ? order by decided_at desc, id desc limit 1";
+    private static final String DELETE_ALL = "delete from item_daily_stats";
+    private static final String ADD_TO_ROW = "update item_daily_stats set booked_minutes = booked_minutes + ?, " +
+            "approvals = approvals + ?, rejections = rejections + ?, " +
+            "lead_time_minutes_sum = lead_time_minutes_sum + ?, lead_time_samples = lead_time_samples + ? " +
+            "where item_id = ? and stats_date = ?";
+    private static final String INSERT_ROW = "insert into item_daily_stats (item_id, stats_date, owner_id, " +
+            "booked_minutes, approvals, rejections, lead_time_minutes_sum, lead_time_samples) " +
+            "values (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobLeaseRepository jobLeaseRepository;
+    private final JobWatermarkRepository jobWatermarkRepository;
+    private final ShardRouter shardRouter;
+
+    @Value("${shareit.stats.rollup.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${shareit.stats.rollup.lease:PT10M}")
+    private Duration lease;
+
+    @Value("${shareit.stats.rollup.safety-lag:PT5M}")
+    private Duration safetyLag;
+
+    @Scheduled(fixedDelayString = "${shareit.stats.rollup.delay-ms:60000}")
+    public void rollUp() {
+        shardRouter.forEachShard(this::rollUpCurrentShard);
+    }
+
+    public void backfill() {
+        shardRouter.forEachShard(this::backfillCurrentShard);
+    }
+
+    private void rollUpCurrentShard() {
+        if (!jobLeaseRepository.tryAcquire(JOB_NAME, lease)) {
+            return;
+        }
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minus(safetyLag);
+            int processed;
+            do {
+                processed = transactionTemplate.execute(status -> rollUpBatch(cutoff));
+            } while (processed == batchSize);
+        } finally {
+            jobLeaseRepository.release(JOB_NAME);
+        }
+    }
+
+    private void backfillCurrentShard() {
+        if (!jobLeaseRepository.tryAcquire(JOB_NAME, lease)) {
+            throw new IllegalStateException("Пересчёт статистики уже выполняется на другом узле");
+        }
+        try {
+            // Решения новее cutoff пересчёт пропускает: их добавит инкрементальный режим от сохранённой позиции.
+            LocalDateTime cutoff = LocalDateTime.now().minus(safetyLag);
+            long rows = transactionTemplate.execute(status -> {
+                List<JobWatermark> last = jdbcTemplate.query(SELECT_LAST_DECIDED, (rs, rowNum) ->
+                        new JobWatermark(JOB_NAME, rs.getTimestamp("decided_at").toLocalDateTime(), rs.getLong("id")),
+                        cutoff);
+                jdbcTemplate.update(DELETE_ALL);
+                long total = backfillFrom(SELECT_ALL_BOOKINGS, cutoff) + backfillFrom(SELECT_ALL_ARCHIVED, null);
+                jobWatermarkRepository.save(last.isEmpty()
+                        ? new JobWatermark(JOB_NAME, JobWatermarkRepository.ORIGIN, 0L) : last.get(0));
+                return total;
+            });
+            log.info("Статистика использования пересчитана по {} бронированиям", rows);
+        } finally {
+            jobLeaseRepository.release(JOB_NAME);
+        }
+    }
+
+    private int rollUpBatch(LocalDateTime cutoff) {
+        JobWatermark watermark = jobWatermarkRepository.find(JOB_NAME);
+        Accumulator accumulator = new Accumulator();
+        List<BookingRow> rows = jdbcTemplate.query(SELECT_DECIDED, this::mapRow,
+                watermark.getLastTs(), watermark.getLastTs(), watermark.getLastId(), cutoff, batchSize);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        rows.forEach(accumulator::add);
+        accumulator.flush();
+        BookingRow last = rows.get(rows.size() - 1);
+        watermark.setLastTs(last.decidedAt());
+        watermark.setLastId(last.id());
+        jobWatermarkRepository.save(watermark);
+        return rows.size();
+    }
+
+    // cutoff передаётся только для оперативной таблицы: в архив попадают давно решённые бронирования.
+    private long backfillFrom(String sql, LocalDateTime cutoff) {
+        long total = 0;
+        long lastId = 0;
+        List<BookingRow> rows;
+        do {
+            rows = cutoff == null
+                    ? jdbcTemplate.query(sql, this::mapRow, lastId, batchSize)
+                    : jdbcTemplate.query(sql, this::mapRow, lastId, cutoff, batchSize);
+            Accumulator accumulator = new Accumulator();
+            rows.forEach(accumulator::add);
+            accumulator.flush();
+            if (!rows.isEmpty()) {
+                lastId = rows.get(rows.size() - 1).id();
+            }
+            total += rows.size();
+        } while (rows.size() == batchSize);
+        return total;
+    }
+
+    private BookingRow mapRow(ResultSet rs, int rowNum) throws SQLException {
+        Timestamp decidedAt = rs.getTimestamp("decided_at");
+        return new BookingRow(rs.getLong("id"), rs.getLong("item_id"), rs.getLong("owner_id"),
+                rs.getTimestamp("start_date").toLocalDateTime(), rs.getTimestamp("end_date").toLocalDateTime(),
+                rs.getString("status"), decidedAt == null ? null : decidedAt.toLocalDateTime());
+    }
+
+    private record BookingRow(long id, long itemId, long ownerId, LocalDateTime start, LocalDateTime end,
+                              String status, LocalDateTime decidedAt) {
+    }
+
+    private record RowKey(long itemId, LocalDate date) {
+    }
+
+    private static class Delta {
+        long ownerId;
+        long bookedMinutes;
+        long approvals;
+        long rejections;
+        long leadTimeMinutesSum;
+        long leadTimeSamples;
+    }
+
+    private class Accumulator {
+        private final Map<RowKey, Delta> deltas = new HashMap<>();
+
+        void add(BookingRow row) {
+            boolean approved = "APPROVED".equals(row.status());
+            if (!approved && !"REJECTED".equals(row.status())) {
+                return;
+            }
+
+            LocalDate decisionDate = row.decidedAt() != null ? row.decidedAt().toLocalDate() : row.start().toLocalDate();
+            Delta decision = delta(row, decisionDate);
+            if (approved) {
+                decision.approvals++;
+                if (row.decidedAt() != null) {
+                    long leadTime = Duration.between(row.decidedAt(), row.start()).toMinutes();
+                    decision.leadTimeMinutesSum += Math.max(0, leadTime);
+                    decision.leadTimeSamples++;
+                }
+                addBookedMinutes(row);
+            } else {
+                decision.rejections++;
+            }
+        }
+
+        void flush() {
+            deltas.forEach((key, delta) -> {
+                int updated = jdbcTemplate.update(ADD_TO_ROW, delta.bookedMinutes, delta.approvals, delta.rejections,
+                        delta.leadTimeMinutesSum, delta.leadTimeSamples, key.itemId(), key.date());
+                if (updated == 0) {
+                    jdbcTemplate.update(INSERT_ROW, key.itemId(), key.date(), delta.ownerId, delta.bookedMinutes,
+                            delta.approvals, delta.rejections, delta.leadTimeMinutesSum, delta.leadTimeSamples);
+                }
+            });
+            deltas.clear();
+        }
+
+        // Бронирование раскладывается по календарным дням, которые оно покрывает.
+        private void addBookedMinutes(BookingRow row) {
+            LocalDateTime cursor = row.start();
+            while (cursor.isBefore(row.end())) {
+                LocalDateTime nextDay = cursor.toLocalDate().plusDays(1).atStartOfDay();
+                LocalDateTime segmentEnd = nextDay.isBefore(row.end()) ? nextDay : row.end();
+                delta(row, cursor.toLocalDate()).bookedMinutes += Duration.between(cursor, segmentEnd).toMinutes();
+                cursor = segmentEnd;
+            }
+        }
+
+        private Delta delta(BookingRow row, LocalDate date) {
+            Delta delta = deltas.computeIfAbsent(new RowKey(row.itemId(), date), key -> new Delta());
+            delta.ownerId = row.ownerId();
+            return delta;
+        }
+    }
+}
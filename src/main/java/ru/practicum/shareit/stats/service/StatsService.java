@@ -0,0 +1,11 @@
+package ru.practicum.shareit.stats.service;
+
+import ru.practicum.shareit.stats.dto.UtilizationStatsDto;
+
+import java.time.LocalDate;
+
+public interface StatsService {
+    UtilizationStatsDto getItemStats(Long itemId, Long userId, LocalDate from, LocalDate to, String granularity);
+
+    UtilizationStatsDto getOwnerStats(Long ownerId, Long userId, LocalDate from, LocalDate to, String granularity);
+}
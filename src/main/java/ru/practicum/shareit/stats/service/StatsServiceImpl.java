@@ -0,0 +1,122 @@
+package ru.practicum.shareit.stats.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.exeptions.ForbiddenException;
+import ru.practicum.shareit.exeptions.NotFoundException;
+import ru.practicum.shareit.exeptions.ValidationException;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.stats.dto.DailyStatsRow;
+import ru.practicum.shareit.stats.dto.UtilizationPeriodDto;
+import ru.practicum.shareit.stats.dto.UtilizationStatsDto;
+import ru.practicum.shareit.stats.repository.ItemDailyStatsRepository;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class StatsServiceImpl implements StatsService {
+    private static final long MAX_RANGE_DAYS = 366;
+    private static final long DEFAULT_RANGE_DAYS = 30;
+
+    private final ItemDailyStatsRepository itemDailyStatsRepository;
+    private final ItemRepository itemRepository;
+    private final UserRepository userRepository;
+
+    @Override
+    public UtilizationStatsDto getItemStats(Long itemId, Long userId, LocalDate from, LocalDate to,
+                                            String granularity) {
+        Item item = itemRepository.findByIdAndOwnerDeletedFalse(itemId)
+                .orElseThrow(() -> new NotFoundException(String.format("Предмет с Id %d не найден.", itemId)));
+        if (!item.getOwner().getId().equals(userId)) {
+            throw new ForbiddenException("Статистика вещи доступна только её владельцу");
+        }
+
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(DEFAULT_RANGE_DAYS - 1);
+        validateRange(start, end);
+        return toStats(itemDailyStatsRepository.findItemDailyStats(itemId, start, end), start, end, granularity);
+    }
+
+    @Override
+    public UtilizationStatsDto getOwnerStats(Long ownerId, Long userId, LocalDate from, LocalDate to,
+                                             String granularity) {
+        if (!userRepository.existsByIdAndDeletedFalse(ownerId)) {
+            throw new NotFoundException(String.format("Пользователь с Id %d не найден", ownerId));
+        }
+        if (!ownerId.equals(userId)) {
+            throw new ForbiddenException("Статистика доступна только самому владельцу");
+        }
+
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(DEFAULT_RANGE_DAYS - 1);
+        validateRange(start, end);
+        return toStats(itemDailyStatsRepository.findOwnerDailyStats(ownerId, start, end), start, end, granularity);
+    }
+
+    private UtilizationStatsDto toStats(List<DailyStatsRow> rows, LocalDate from, LocalDate to, String granularity) {
+        boolean weekly = parseGranularity(granularity);
+        Map<LocalDate, List<DailyStatsRow>> byPeriod = rows.stream()
+                .collect(Collectors.groupingBy(row -> weekly
+                        ? row.getDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
+                        : row.getDate(), TreeMap::new, Collectors.toList()));
+
+        List<UtilizationPeriodDto> periods = byPeriod.entrySet().stream()
+                .map(entry -> new UtilizationPeriodDto(entry.getKey(),
+                        toHours(sum(entry.getValue(), DailyStatsRow::getBookedMinutes)),
+                        sum(entry.getValue(), DailyStatsRow::getApprovals),
+                        sum(entry.getValue(), DailyStatsRow::getRejections)))
+                .collect(Collectors.toList());
+
+        long approvals = sum(rows, DailyStatsRow::getApprovals);
+        long rejections = sum(rows, DailyStatsRow::getRejections);
+        long leadTimeSamples = sum(rows, DailyStatsRow::getLeadTimeSamples);
+        Double approvalRate = approvals + rejections > 0 ? (double) approvals / (approvals + rejections) : null;
+        Double averageLeadTime = leadTimeSamples > 0
+                ? toHours(sum(rows, DailyStatsRow::getLeadTimeMinutesSum)) / leadTimeSamples
+                : null;
+
+        return new UtilizationStatsDto(from, to, weekly ? "week" : "day",
+                toHours(sum(rows, DailyStatsRow::getBookedMinutes)), approvals, rejections,
+                approvalRate, averageLeadTime, periods);
+    }
+
+    private boolean parseGranularity(String granularity) {
+        if (granularity == null || granularity.equalsIgnoreCase("day")) {
+            return false;
+        }
+        if (granularity.equalsIgnoreCase("week")) {
+            return true;
+        }
+        throw new ValidationException(String.format("Неизвестная детализация: %s", granularity));
+    }
+
+    private void validateRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new ValidationException("Дата начала периода должна быть не позже даты окончания");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new ValidationException(String.format("Период не может превышать %d дней", MAX_RANGE_DAYS));
+        }
+    }
+
+    private long sum(List<DailyStatsRow> rows, Function<DailyStatsRow, Long> field) {
+        return rows.stream().map(field).mapToLong(value -> value == null ? 0 : value).sum();
+    }
+
+    private double toHours(long minutes) {
+        return minutes / 60.0;
+    }
+}
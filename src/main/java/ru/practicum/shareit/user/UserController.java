@@ -2,12 +2,21 @@ package ru.practicum.shareit.user;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.shareit.concurrency.OptimisticLockRetry;
 import ru.practicum.shareit.exeptions.ValidationException;
+import ru.practicum.shareit.sharding.ShardRouter;
+import ru.practicum.shareit.stats.dto.UtilizationStatsDto;
+import ru.practicum.shareit.stats.service.StatsService;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.dto.UserUpdateDto;
 import ru.practicum.shareit.user.service.UserService;
 
+import java.time.LocalDate;
 import java.util.List;
 
 /**
@@ -18,6 +27,10 @@ import java.util.List;
 @RequiredArgsConstructor
 public class UserController {
     private final UserService userService;
+    private final OptimisticLockRetry optimisticLockRetry;
+    private final StatsService statsService;
+    private final ShardRouter shardRouter;
+    private static final String USER_ID_HEADER = "X-Sharer-User-Id";
 
     @PostMapping
     public UserDto createUser(@Valid @RequestBody UserDto userDto) {
@@ -35,9 +48,33 @@ public class UserController {
             return userService.getUserById(id);
         }
 
+    @GetMapping("/{id}/stats")
+    public UtilizationStatsDto getOwnerStats(@PathVariable Long id,
+                                             @RequestHeader(USER_ID_HEADER) Long userId,
+                                             @RequestParam(required = false)
+                                             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                             @RequestParam(required = false)
+                                             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                             @RequestParam(defaultValue = "day") String granularity) {
+        return shardRouter.onOwnerShard(id, () -> statsService.getOwnerStats(id, userId, from, to, granularity));
+    }
+
     @GetMapping
-    public List<UserDto> getAllUsers() {
-        return userService.getAllUsers();
+    public List<UserDto> getAllUsers(@RequestParam(defaultValue = "0") Long afterId,
+                                     @RequestParam(defaultValue = "100") int size) {
+        return userService.getUsers(afterId, size);
+    }
+
+    @GetMapping(params = "ids")
+    public List<UserDto> getUsersByIds(@RequestParam List<Long> ids) {
+        return userService.getUsersByIds(ids);
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(userService::exportUsers);
     }
 
     @PatchMapping("/{id}")
@@ -47,7 +84,7 @@ public class UserController {
         userDto.setName(userUpdateDto.getName());
         userDto.setEmail(userUpdateDto.getEmail());
 
-        return userService.updateUser(id, userDto);
+        return optimisticLockRetry.execute(() -> userService.updateUser(id, userDto));
     }
 
     @DeleteMapping("/{id}")
@@ -9,6 +9,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.experimental.FieldDefaults;
 
+import java.time.LocalDateTime;
+
 @Entity
 @Table(name = "users")
 @Data
@@ -28,4 +30,14 @@ public class User {
     @NotBlank(message = "Email не может быть пустым")
     @Email(message = "Некорректный формат email")
     String email;
+
+    @Column(name = "deleted", nullable = false)
+    boolean deleted;
+
+    @Column(name = "deleted_at")
+    LocalDateTime deletedAt;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    Long version;
 }
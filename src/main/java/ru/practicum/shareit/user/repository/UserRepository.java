@@ -1,17 +1,40 @@
 package ru.practicum.shareit.user.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.practicum.shareit.user.model.User;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
+// Мягко удалённые пользователи отсекаются в запросах, а не на уровне сущности: бронирования и отзывы
+// ссылаются на них до окончательной очистки и должны загружаться.
 public interface UserRepository extends JpaRepository<User,Long> {
     Optional<User> findByEmail(String email);
 
-    @Query("select count(u) > 0 from User u where u.email = :email and u.id != :excludeUserId")
+    Optional<User> findByIdAndDeletedFalse(Long id);
+
+    boolean existsByIdAndDeletedFalse(Long id);
+
+    List<User> findByIdInAndDeletedFalse(Collection<Long> ids);
+
+    List<User> findByIdGreaterThanAndDeletedFalseOrderById(Long afterId, Pageable pageable);
+
+    @Query(value = "select count(*) > 0 from users where email = :email and id <> :excludeUserId", nativeQuery = true)
     boolean existsByEmailAndIdNot(@Param("email") String email, @Param("excludeUserId") Long excludeUserId);
+
+    @Query(value = "select count(*) > 0 from users where email = :email", nativeQuery = true)
+    boolean existsByEmailIncludingDeleted(@Param("email") String email);
+
+    @Modifying
+    @Query("update User u set u.deleted = true, u.deletedAt = :deletedAt, u.version = u.version + 1 " +
+            "where u.id = :id")
+    int markDeleted(@Param("id") Long id, @Param("deletedAt") LocalDateTime deletedAt);
 }
@@ -0,0 +1,46 @@
+package ru.practicum.shareit.user.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.shareit.user.dto.UserDto;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * Читает таблицу users однонаправленным курсором, не загружая её целиком в память.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserStreamRepository {
+    private static final String SELECT_USERS = "select id, name, email from users where deleted = false order by id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${shareit.users.export.fetch-size:500}")
+    private int fetchSize;
+
+    public void forEachUser(UserRowHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_USERS,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, rs -> {
+            try {
+                handler.handle(new UserDto(rs.getLong("id"), rs.getString("name"), rs.getString("email")));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    public interface UserRowHandler {
+        void handle(UserDto user) throws IOException;
+    }
+}
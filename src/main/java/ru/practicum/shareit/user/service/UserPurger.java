@@ -0,0 +1,155 @@
+package ru.practicum.shareit.user.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.item.service.ItemNameIndex;
+import ru.practicum.shareit.item.service.ItemSearchCache;
+import ru.practicum.shareit.sharding.ShardRouter;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновая очистка мягко удалённых пользователей.
+ * Зависимые строки удаляются небольшими пачками в отдельных транзакциях с паузой между ними,
+ * поэтому большие таблицы не блокируются надолго. Всё состояние хранится в флаге users.deleted:
+ * после падения приложения очистка просто продолжается со следующего запуска.
+ */
+@Slf4j
+@Component
+public class UserPurger {
+    private static final String SELECT_DELETED_USERS =
+            "select id from users where deleted = true order by deleted_at, id limit ?";
+    private static final String COUNT_DELETED_USERS = "select count(*) from users where deleted = true";
+    private static final String DELETE_USER = "delete from users where id = ? and deleted = true";
+
+    private static final List<PurgeStep> STEPS = List.of(
+            new PurgeStep("comments", "delete from comments where id in " +
+                    "(select id from comments where author_id = ? limit ?)"),
+            new PurgeStep("comments", "delete from comments where id in " +
+                    "(select c.id from comments c join items i on c.item_id = i.id where i.owner_id = ? limit ?)"),
+            new PurgeStep("completed_rentals", "delete from completed_rentals where (booker_id, item_id) in " +
+                    "(select booker_id, item_id from completed_rentals where booker_id = ? limit ?)"),
+            new PurgeStep("completed_rentals", "delete from completed_rentals where (booker_id, item_id) in " +
+                    "(select r.booker_id, r.item_id from completed_rentals r join items i on r.item_id = i.id " +
+                    "where i.owner_id = ? limit ?)"),
+            new PurgeStep("bookings", "delete from bookings where id in " +
+                    "(select id from bookings where booker_id = ? limit ?)"),
+            new PurgeStep("bookings", "delete from bookings where id in " +
+                    "(select b.id from bookings b join items i on b.item_id = i.id where i.owner_id = ? limit ?)"),
+            new PurgeStep("bookings_archive", "delete from bookings_archive where id in " +
+                    "(select id from bookings_archive where booker_id = ? limit ?)"),
+            new PurgeStep("bookings_archive", "delete from bookings_archive where id in " +
+                    "(select b.id from bookings_archive b join items i on b.item_id = i.id where i.owner_id = ? limit ?)"),
+            new PurgeStep("request_links", "update items set request_id = null where id in " +
+                    "(select i.id from items i join requests r on i.request_id = r.id where r.requestor_id = ? limit ?)"),
+            new PurgeStep("requests", "delete from requests where id in " +
+                    "(select id from requests where requestor_id = ? limit ?)"),
+            new PurgeStep("item_photos", "delete from item_photos where id in " +
+                    "(select p.id from item_photos p join items i on p.item_id = i.id where i.owner_id = ? limit ?)"),
+            // Вещи сначала выбираются, чтобы убрать удалённые id из индекса подсказок.
+            new PurgeStep("items", "select id from items where owner_id = ? limit ?")
+    );
+    private static final String DELETE_ITEM = "delete from items where id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ShardRouter shardRouter;
+    private final ItemSearchCache itemSearchCache;
+    private final ItemNameIndex itemNameIndex;
+    private final AtomicLong pendingUsers = new AtomicLong();
+    private final Counter purgedUsers;
+
+    @Value("${shareit.users.purge.batch-size:500}")
+    private int batchSize;
+
+    @Value("${shareit.users.purge.batch-pause-ms:100}")
+    private long batchPauseMs;
+
+    @Value("${shareit.users.purge.max-batches-per-run:200}")
+    private int maxBatchesPerRun;
+
+    public UserPurger(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry, ShardRouter shardRouter,
+                      ItemSearchCache itemSearchCache, ItemNameIndex itemNameIndex) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.itemSearchCache = itemSearchCache;
+        this.itemNameIndex = itemNameIndex;
+        this.meterRegistry = meterRegistry;
+        this.shardRouter = shardRouter;
+        this.purgedUsers = meterRegistry.counter("shareit.users.purge.users");
+        meterRegistry.gauge("shareit.users.purge.pending", pendingUsers);
+    }
+
+    @Scheduled(fixedDelayString = "${shareit.users.purge.delay-ms:60000}")
+    public void purgeDeletedUsers() {
+        shardRouter.forEachShard(this::purgeOnCurrentShard);
+    }
+
+    private void purgeOnCurrentShard() {
+        Long pending = jdbcTemplate.queryForObject(COUNT_DELETED_USERS, Long.class);
+        pendingUsers.set(pending == null ? 0 : pending);
+        if (pendingUsers.get() == 0) {
+            return;
+        }
+
+        int batchesLeft = maxBatchesPerRun;
+        for (Long userId : jdbcTemplate.queryForList(SELECT_DELETED_USERS, Long.class, maxBatchesPerRun)) {
+            batchesLeft = purgeUser(userId, batchesLeft);
+            if (batchesLeft <= 0) {
+                break;
+            }
+        }
+    }
+
+    private int purgeUser(Long userId, int batchesLeft) {
+        for (PurgeStep step : STEPS) {
+            int affected;
+            do {
+                if (batchesLeft-- <= 0 || !pause()) {
+                    return 0;
+                }
+                affected = step.table().equals("items")
+                        ? purgeItems(step.sql(), userId)
+                        : jdbcTemplate.update(step.sql(), userId, batchSize);
+                meterRegistry.counter("shareit.users.purge.rows", "table", step.table()).increment(affected);
+                if (affected > 0 && step.table().equals("items")) {
+                    itemSearchCache.invalidateAll();
+                }
+            } while (affected == batchSize);
+        }
+
+        if (jdbcTemplate.update(DELETE_USER, userId) > 0) {
+            purgedUsers.increment();
+            pendingUsers.decrementAndGet();
+            log.info("Пользователь {} и связанные с ним данные окончательно удалены", userId);
+        }
+        return batchesLeft;
+    }
+
+    private int purgeItems(String selectSql, Long ownerId) {
+        List<Long> itemIds = jdbcTemplate.queryForList(selectSql, Long.class, ownerId, batchSize);
+        if (!itemIds.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_ITEM, itemIds, itemIds.size(), (ps, itemId) -> ps.setLong(1, itemId));
+            itemIds.forEach(itemNameIndex::remove);
+        }
+        return itemIds.size();
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(batchPauseMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private record PurgeStep(String table, String sql) {
+    }
+}
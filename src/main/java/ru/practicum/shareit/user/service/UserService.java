@@ -2,6 +2,8 @@ package ru.practicum.shareit.user.service;
 
 import ru.practicum.shareit.user.dto.UserDto;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 public interface UserService {
@@ -9,7 +11,11 @@ public interface UserService {
 
     UserDto getUserById(Long id);
 
-    List<UserDto> getAllUsers();
+    List<UserDto> getUsers(Long afterId, int size);
+
+    List<UserDto> getUsersByIds(List<Long> ids);
+
+    void exportUsers(OutputStream outputStream) throws IOException;
 
     UserDto updateUser(Long id, UserDto userDto);
 
@@ -1,23 +1,54 @@
 package ru.practicum.shareit.user.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.practicum.shareit.exeptions.ConflictException;
 import ru.practicum.shareit.exeptions.NotFoundException;
+import ru.practicum.shareit.exeptions.ValidationException;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.service.ItemNameIndex;
+import ru.practicum.shareit.item.service.ItemSearchCache;
+import ru.practicum.shareit.item.service.ItemViewCoalescer;
+import ru.practicum.shareit.sharding.ShardRouter;
+import ru.practicum.shareit.sharding.UserReplicator;
 import ru.practicum.shareit.user.UserMapper;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
+import ru.practicum.shareit.user.repository.UserStreamRepository;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class UserServiceImpl implements UserService {
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_IDS = 500;
+
     private final UserRepository userRepository;
+    private final UserStreamRepository userStreamRepository;
+    private final ObjectMapper objectMapper;
+    private final UserReplicator userReplicator;
+    private final ItemRepository itemRepository;
+    private final ItemNameIndex itemNameIndex;
+    private final ItemSearchCache itemSearchCache;
+    private final ItemViewCoalescer itemViewCoalescer;
+    private final ShardRouter shardRouter;
 
     @Override
     public UserDto createUser(UserDto userDto) {
@@ -26,27 +57,63 @@ public class UserServiceImpl implements UserService {
 
         User user = UserMapper.toUser(userDto);
         User savedUser = userRepository.save(user);
+        userReplicator.replicate(savedUser.getId());
         return UserMapper.toUserDto(savedUser);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public UserDto getUserById(Long id) {
-        User user = userRepository.findById(id)
+        User user = userRepository.findByIdAndDeletedFalse(id)
                 .orElseThrow(() -> new NotFoundException(String.format("Пользователь с таким Id %d не найден", id)));
         return UserMapper.toUserDto(user);
     }
 
     @Override
-    public List<UserDto> getAllUsers() {
-        return userRepository.findAll().stream()
+    @Transactional(readOnly = true)
+    public List<UserDto> getUsers(Long afterId, int size) {
+        if (afterId < 0 || size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new ValidationException(String.format(
+                    "Некорректные параметры страницы: afterId=%d, size=%d", afterId, size));
+        }
+        return userRepository.findByIdGreaterThanAndDeletedFalseOrderById(afterId, PageRequest.of(0, size)).stream()
+                .map(UserMapper::toUserDto)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<UserDto> getUsersByIds(List<Long> ids) {
+        if (ids.size() > MAX_BATCH_IDS) {
+            throw new ValidationException(
+                    String.format("За один запрос можно получить не более %d пользователей", MAX_BATCH_IDS));
+        }
+        Map<Long, User> byId = userRepository.findByIdInAndDeletedFalse(new LinkedHashSet<>(ids)).stream()
+                .collect(Collectors.toMap(User::getId, user -> user));
+        return ids.stream()
+                .distinct()
+                .map(byId::get)
+                .filter(Objects::nonNull)
                 .map(UserMapper::toUserDto)
                 .collect(Collectors.toList());
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public void exportUsers(OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.writeStartArray();
+            userStreamRepository.forEachUser(generator::writeObject);
+            generator.writeEndArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
     @Override
     @Transactional
     public UserDto updateUser(Long id, UserDto userDto) {
-        User existingUser = userRepository.findById(id)
+        User existingUser = userRepository.findByIdAndDeletedFalse(id)
                 .orElseThrow(() -> new NotFoundException(String.format("Пользователь с таким Id %d не найден", id)));
 
         if (userDto.getEmail() != null && !userDto.getEmail().equals(existingUser.getEmail())) {
@@ -61,15 +128,15 @@ public class UserServiceImpl implements UserService {
         }
 
         User updatedUser = userRepository.save(existingUser);
+        userReplicator.replicate(updatedUser.getId());
         return UserMapper.toUserDto(updatedUser);
     }
 
     private void checkEmailUniqueness(String email, Long excludeUserId) {
         if (excludeUserId == null) {
-            userRepository.findByEmail(email)
-                    .ifPresent(user -> {
-                        throw new ConflictException(String.format("Email %s уже используется", email));
-                    });
+            if (userRepository.existsByEmailIncludingDeleted(email)) {
+                throw new ConflictException(String.format("Email %s уже используется", email));
+            }
         } else {
             if (userRepository.existsByEmailAndIdNot(email, excludeUserId)) {
                 throw new ConflictException(String.format("Email %s уже используется другим пользователем", email));
@@ -80,9 +147,26 @@ public class UserServiceImpl implements UserService {
     @Override
     @Transactional
     public void deleteUser(Long id) {
-        if (!userRepository.existsById(id)) {
+        if (!userRepository.existsByIdAndDeletedFalse(id)) {
             throw new NotFoundException(String.format("Пользователь с Id %d не найден", id));
         }
-        userRepository.deleteById(id);
+        LocalDateTime deletedAt = LocalDateTime.now();
+        userRepository.markDeleted(id, deletedAt);
+        userReplicator.replicate(id);
+        hideOwnedItems(id);
+    }
+
+    // Вещи удалённого владельца остаются в базе до очистки, но из поиска, подсказок и кэша карточек
+    // убираются сразу после фиксации удаления. При откате индекс и кэши не меняются.
+    private void hideOwnedItems(Long ownerId) {
+        List<Long> itemIds = shardRouter.queryAllShards(() -> itemRepository.findIdsByOwnerId(ownerId));
+        itemIds.forEach(itemViewCoalescer::invalidate);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                itemIds.forEach(itemNameIndex::remove);
+                itemSearchCache.invalidateAll();
+            }
+        });
     }
 }
@@ -2,10 +2,22 @@ CREATE TABLE IF NOT EXISTS users (
 id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
 name VARCHAR(100) NOT NULL,
 email VARCHAR(100) NOT NULL,
+deleted BOOLEAN NOT NULL DEFAULT FALSE,
+deleted_at TIMESTAMP WITHOUT TIME ZONE,
+version BIGINT NOT NULL DEFAULT 0,
 CONSTRAINT pk_user PRIMARY KEY(id),
 CONSTRAINT UQ_USER_EMAIL UNIQUE (email)
 );
 
+CREATE TABLE IF NOT EXISTS requests (
+id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+description VARCHAR(1000) NOT NULL,
+requestor_id BIGINT NOT NULL,
+created TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+CONSTRAINT pk_request PRIMARY KEY (id),
+CONSTRAINT fk_request_requestor FOREIGN KEY (requestor_id) REFERENCES users(id)
+);
+
 CREATE TABLE IF NOT EXISTS items (
 id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
 name VARCHAR(100) NOT NULL,
@@ -13,10 +25,16 @@ description VARCHAR(1000) NOT NULL,
 is_available BOOLEAN NOT NULL,
 owner_id BIGINT NOT NULL,
 request_id BIGINT,
+latitude DOUBLE PRECISION,
+longitude DOUBLE PRECISION,
+geohash VARCHAR(12),
+version BIGINT NOT NULL DEFAULT 0,
 CONSTRAINT pk_item PRIMARY KEY (id),
-CONSTRAINT fk_owner FOREIGN KEY (owner_id) REFERENCES users(id),
+CONSTRAINT fk_owner FOREIGN KEY (owner_id) REFERENCES users(id)
 );
 
+CREATE INDEX IF NOT EXISTS idx_items_geohash ON items (geohash);
+
 CREATE TABLE IF NOT EXISTS bookings (
 id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
 start_date TIMESTAMP WITHOUT TIME ZONE NOT NULL,
@@ -24,6 +42,8 @@ end_date TIMESTAMP WITHOUT TIME ZONE NOT NULL,
 item_id BIGINT NOT NULL,
 booker_id BIGINT NOT NULL,
 status VARCHAR(20) NOT NULL,
+decided_at TIMESTAMP WITHOUT TIME ZONE,
+version BIGINT NOT NULL DEFAULT 0,
 CONSTRAINT pk_booking PRIMARY KEY (id),
 CONSTRAINT fk_booking_item FOREIGN KEY (item_id) REFERENCES items(id),
 CONSTRAINT fk_booking_booker FOREIGN KEY (booker_id) REFERENCES users(id),
@@ -31,6 +51,22 @@ CONSTRAINT chk_booking_dates CHECK (end_date > start_date),
 CONSTRAINT chk_booking_status CHECK (status IN ('WAITING','APPROVED','REJECTED','CANCELED'))
 );
 
+CREATE INDEX IF NOT EXISTS idx_bookings_decided ON bookings (decided_at, id);
+CREATE INDEX IF NOT EXISTS idx_bookings_item_start ON bookings (item_id, start_date);
+
+CREATE TABLE IF NOT EXISTS bookings_archive (
+id BIGINT NOT NULL,
+start_date TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+end_date TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+item_id BIGINT NOT NULL,
+booker_id BIGINT NOT NULL,
+status VARCHAR(20) NOT NULL,
+CONSTRAINT pk_booking_archive PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_bookings_archive_booker ON bookings_archive (booker_id, start_date);
+CREATE INDEX IF NOT EXISTS idx_bookings_archive_item ON bookings_archive (item_id, start_date);
+
 CREATE TABLE IF NOT EXISTS comments (
 id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
 text VARCHAR(1000) NOT NULL,
@@ -40,4 +76,72 @@ created TIMESTAMP WITHOUT TIME ZONE NOT NULL,
 CONSTRAINT pk_comment PRIMARY KEY (id),
 CONSTRAINT fk_comment_item FOREIGN KEY (item_id) REFERENCES items(id),
 CONSTRAINT fk_comment_author FOREIGN KEY (author_id) REFERENCES users(id)
-);
\ No newline at end of file
+);
+
+CREATE TABLE IF NOT EXISTS job_leases (
+name VARCHAR(100) NOT NULL,
+owner VARCHAR(200) NOT NULL,
+locked_until TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+CONSTRAINT pk_job_lease PRIMARY KEY (name)
+);
+
+CREATE TABLE IF NOT EXISTS item_popularity (
+item_id BIGINT NOT NULL,
+bucket_start TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+bookings BIGINT NOT NULL,
+comments BIGINT NOT NULL,
+CONSTRAINT pk_item_popularity PRIMARY KEY (item_id, bucket_start)
+);
+
+CREATE TABLE IF NOT EXISTS user_replication_outbox (
+id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+user_id BIGINT NOT NULL,
+shard INT NOT NULL,
+attempts INT NOT NULL DEFAULT 0,
+next_attempt_at TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+CONSTRAINT pk_user_replication_outbox PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_user_replication_outbox_due ON user_replication_outbox (next_attempt_at, id);
+CREATE INDEX IF NOT EXISTS idx_user_replication_outbox_user ON user_replication_outbox (user_id);
+
+CREATE TABLE IF NOT EXISTS job_watermarks (
+name VARCHAR(100) NOT NULL,
+last_ts TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+last_id BIGINT NOT NULL,
+CONSTRAINT pk_job_watermark PRIMARY KEY (name)
+);
+
+CREATE TABLE IF NOT EXISTS item_daily_stats (
+item_id BIGINT NOT NULL,
+stats_date DATE NOT NULL,
+owner_id BIGINT NOT NULL,
+booked_minutes BIGINT NOT NULL,
+approvals BIGINT NOT NULL,
+rejections BIGINT NOT NULL,
+lead_time_minutes_sum BIGINT NOT NULL,
+lead_time_samples BIGINT NOT NULL,
+CONSTRAINT pk_item_daily_stats PRIMARY KEY (item_id, stats_date)
+);
+
+CREATE INDEX IF NOT EXISTS idx_item_daily_stats_owner ON item_daily_stats (owner_id, stats_date);
+
+CREATE TABLE IF NOT EXISTS item_photos (
+id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+item_id BIGINT NOT NULL,
+hash VARCHAR(64) NOT NULL,
+content_type VARCHAR(50) NOT NULL,
+size_bytes BIGINT NOT NULL,
+uploaded_at TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+CONSTRAINT pk_item_photo PRIMARY KEY (id),
+CONSTRAINT uq_item_photo UNIQUE (item_id, hash)
+);
+
+CREATE TABLE IF NOT EXISTS completed_rentals (
+booker_id BIGINT NOT NULL,
+item_id BIGINT NOT NULL,
+first_completed_at TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+CONSTRAINT pk_completed_rental PRIMARY KEY (booker_id, item_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_completed_rentals_booker ON completed_rentals (booker_id, first_completed_at);
\ No newline at end of file
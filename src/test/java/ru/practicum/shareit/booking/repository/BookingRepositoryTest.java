@@ -0,0 +1,132 @@
+package ru.practicum.shareit.booking.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.BookingStatus;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Каждое решение выполняется в собственной транзакции, как в BookingServiceImpl.approveBooking,
+// поэтому транзакция теста отключена.
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookingRepositoryTest {
+    private static final int APPROVERS = 64;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private Booking booking;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        User owner = userRepository.save(user("owner"));
+        User booker = userRepository.save(user("booker"));
+
+        Item item = new Item();
+        item.setName("Дрель");
+        item.setDescription("Простая дрель");
+        item.setAvailable(true);
+        item.setOwner(owner);
+        item = itemRepository.save(item);
+
+        Booking waiting = new Booking();
+        waiting.setStart(LocalDateTime.now().plusDays(1));
+        waiting.setEnd(LocalDateTime.now().plusDays(2));
+        waiting.setItem(item);
+        waiting.setBooker(booker);
+        waiting.setStatus(BookingStatus.WAITING);
+        booking = bookingRepository.save(waiting);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookingRepository.deleteAll();
+        itemRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void secondDecisionUpdatesNothing() {
+        assertEquals(1, decide(BookingStatus.APPROVED));
+        assertEquals(0, decide(BookingStatus.REJECTED), "Повторное решение не должно применяться");
+
+        Booking decided = bookingRepository.findById(booking.getId()).orElseThrow();
+        assertEquals(BookingStatus.APPROVED, decided.getStatus());
+        assertEquals(booking.getVersion() + 1, decided.getVersion());
+    }
+
+    @Test
+    void onlyOneOfConcurrentDecisionsIsApplied() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(APPROVERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < APPROVERS; i++) {
+                BookingStatus status = i % 2 == 0 ? BookingStatus.APPROVED : BookingStatus.REJECTED;
+                Callable<Integer> decision = () -> {
+                    start.await();
+                    return decide(status);
+                };
+                results.add(executor.submit(decision));
+            }
+            start.countDown();
+
+            int applied = 0;
+            for (Future<Integer> result : results) {
+                applied += result.get(30, TimeUnit.SECONDS);
+            }
+            assertEquals(1, applied, "Из одновременных решений должно примениться ровно одно");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Booking decided = bookingRepository.findById(booking.getId()).orElseThrow();
+        assertEquals(booking.getVersion() + 1, decided.getVersion());
+    }
+
+    private int decide(BookingStatus status) {
+        return transactionTemplate.execute(tx ->
+                bookingRepository.updateStatusIfWaiting(booking.getId(), status, LocalDateTime.now()));
+    }
+
+    private static User user(String name) {
+        User user = new User();
+        user.setName(name);
+        user.setEmail(name + "@example.com");
+        return user;
+    }
+}
@@ -0,0 +1,119 @@
+package ru.practicum.shareit.booking.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import ru.practicum.shareit.booking.BookingStatus;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.repository.ArchivedBookingRepository;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.booking.repository.BookingStreamRepository;
+import ru.practicum.shareit.booking.repository.CompletedRentalRepository;
+import ru.practicum.shareit.fields.FieldSet;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.item.service.ItemViewCoalescer;
+import ru.practicum.shareit.item.service.PopularItemsTracker;
+import ru.practicum.shareit.sharding.ShardRouter;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BookingServiceImplTest {
+    private static final Long BOOKER_ID = 10L;
+    private static final int SHARDS = 3;
+    private static final LocalDateTime BASE = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    private final BookingRepository bookingRepository = mock(BookingRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final ArchivedBookingRepository archivedBookingRepository = mock(ArchivedBookingRepository.class);
+    private final ShardRouter shardRouter = mock(ShardRouter.class);
+    private final BookingServiceImpl service = new BookingServiceImpl(bookingRepository, userRepository,
+            mock(ItemRepository.class), archivedBookingRepository, mock(CompletedRentalRepository.class),
+            mock(PopularItemsTracker.class), mock(ItemViewCoalescer.class), mock(ItemBookingTimeline.class),
+            shardRouter, mock(BookingStreamRepository.class), new ObjectMapper());
+
+    private final List<List<Booking>> shards = new ArrayList<>();
+    private final List<Booking> all = new ArrayList<>();
+    private int currentShard;
+
+    @BeforeEach
+    void setUp() {
+        User booker = new User();
+        booker.setId(BOOKER_ID);
+        when(userRepository.findByIdAndDeletedFalse(BOOKER_ID)).thenReturn(Optional.of(booker));
+
+        // Бронирования раскладываются по шардам случайно, даты начала различны.
+        Random random = new Random(42);
+        for (int shard = 0; shard < SHARDS; shard++) {
+            shards.add(new ArrayList<>());
+        }
+        for (long id = 1; id <= 25; id++) {
+            Booking booking = booking(id, booker, BASE.plusHours(random.nextInt(10_000) * 25L + id));
+            shards.get(random.nextInt(SHARDS)).add(booking);
+            all.add(booking);
+        }
+
+        when(shardRouter.shardCount()).thenReturn(SHARDS);
+        when(shardRouter.queryAllShards(any())).thenAnswer(invocation -> {
+            Supplier<Collection<?>> query = invocation.getArgument(0);
+            List<Object> merged = new ArrayList<>();
+            for (currentShard = 0; currentShard < SHARDS; currentShard++) {
+                merged.addAll(query.get());
+            }
+            return merged;
+        });
+        when(bookingRepository.findByBookerIdOrderByStartDesc(eq(BOOKER_ID), any())).thenAnswer(invocation -> {
+            Pageable pageable = invocation.getArgument(1);
+            return page(shards.get(currentShard), pageable.getOffset(), pageable.getPageSize());
+        });
+    }
+
+    @Test
+    void bookerPagesAreMergedAcrossShards() {
+        for (int from = 0; from <= all.size() + 2; from++) {
+            for (int size = 1; size <= 7; size++) {
+                List<Long> expected = page(all, from, size).stream()
+                        .map(Booking::getId)
+                        .collect(Collectors.toList());
+                List<Long> actual = service.getBookingsByBooker("ALL", BOOKER_ID, from, size, FieldSet.ALL).stream()
+                        .map(BookingDto::getId)
+                        .collect(Collectors.toList());
+
+                assertEquals(expected, actual, "from " + from + ", size " + size);
+            }
+        }
+    }
+
+    private static List<Booking> page(List<Booking> bookings, long from, int size) {
+        return bookings.stream()
+                .sorted(Comparator.comparing(Booking::getStart).reversed())
+                .skip(from)
+                .limit(size)
+                .collect(Collectors.toList());
+    }
+
+    private static Booking booking(Long id, User booker, LocalDateTime start) {
+        Item item = new Item();
+        item.setId(id);
+        item.setName("Вещь " + id);
+        return new Booking(id, start, start.plusHours(1), item, booker, BookingStatus.APPROVED, null, 0L);
+    }
+}
@@ -0,0 +1,142 @@
+package ru.practicum.shareit.booking.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.booking.BookingStatus;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.model.User;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ItemBookingTimelineTest {
+    private static final Long ITEM_ID = 1L;
+    private static final Instant START = Instant.parse("2026-01-01T10:00:00Z");
+
+    private final MutableClock clock = new MutableClock(START);
+    private final BookingRepository bookingRepository = mock(BookingRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ItemBookingTimeline timeline = new ItemBookingTimeline(bookingRepository, meterRegistry, clock,
+            1000, Duration.ofMinutes(10), 1000);
+
+    @Test
+    void bookingStartingWithinCurrentTickIsScheduledForNextTick() {
+        clock.set(START.plusMillis(200));
+        Booking booking = upcoming(START.plusMillis(500));
+
+        assertEquals(booking.getId(), timeline.get(ITEM_ID).next().getId());
+        assertEquals(1, timers());
+
+        clock.set(START.plusMillis(1000));
+        timeline.tick();
+        ItemBookingTimeline.LastAndNext view = timeline.get(ITEM_ID);
+
+        assertEquals(booking.getId(), view.last().getId());
+        assertNull(view.next());
+        assertEquals(0, timers());
+        verify(bookingRepository, times(1)).findUpcomingForItem(eq(ITEM_ID), any(), any());
+    }
+
+    @Test
+    void timerFiredBeforeBookingStartIsRearmed() {
+        Booking booking = upcoming(START.plusMillis(1500));
+        timeline.get(ITEM_ID);
+
+        // Ячейка тика 10:00:01 снимается в его начале, за полсекунды до начала бронирования.
+        clock.set(START.plusMillis(1000));
+        timeline.tick();
+
+        assertEquals(1, timers());
+        assertEquals(booking.getId(), timeline.get(ITEM_ID).next().getId());
+
+        clock.set(START.plusMillis(2000));
+        timeline.tick();
+
+        assertEquals(0, timers());
+        assertEquals(booking.getId(), timeline.get(ITEM_ID).last().getId());
+        verify(bookingRepository, times(1)).findUpcomingForItem(eq(ITEM_ID), any(), any());
+    }
+
+    @Test
+    void reloadsReplaceTimerInsteadOfAddingOne() {
+        upcoming(START.plus(Duration.ofDays(30)));
+
+        for (int i = 0; i < 100; i++) {
+            timeline.get(ITEM_ID);
+            timeline.invalidate(ITEM_ID);
+        }
+        assertEquals(0, timers());
+
+        timeline.get(ITEM_ID);
+        clock.set(START.plus(Duration.ofMinutes(11)));
+        timeline.get(ITEM_ID);
+
+        assertEquals(1, timers());
+        verify(bookingRepository, times(102)).findUpcomingForItem(eq(ITEM_ID), any(), any());
+    }
+
+    private Booking upcoming(Instant start) {
+        Item item = new Item();
+        item.setId(ITEM_ID);
+        User booker = new User();
+        booker.setId(2L);
+        Booking booking = new Booking();
+        booking.setId(10L);
+        booking.setItem(item);
+        booking.setBooker(booker);
+        booking.setStart(LocalDateTime.ofInstant(start, ZoneOffset.UTC));
+        booking.setEnd(LocalDateTime.ofInstant(start.plus(Duration.ofHours(1)), ZoneOffset.UTC));
+        booking.setStatus(BookingStatus.APPROVED);
+        when(bookingRepository.findLastBookingsForItems(anyCollection(), any())).thenReturn(List.of());
+        when(bookingRepository.findUpcomingForItem(eq(ITEM_ID), any(), any())).thenReturn(List.of(booking));
+        return booking;
+    }
+
+    private int timers() {
+        return (int) meterRegistry.get("shareit.items.booking-timeline.timers").gauge().value();
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void set(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
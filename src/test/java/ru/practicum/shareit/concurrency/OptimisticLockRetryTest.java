@@ -0,0 +1,49 @@
+package ru.practicum.shareit.concurrency;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import ru.practicum.shareit.exeptions.ConflictException;
+import ru.practicum.shareit.exeptions.NotFoundException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OptimisticLockRetryTest {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final OptimisticLockRetry retry = new OptimisticLockRetry(MAX_ATTEMPTS, 0);
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    @Test
+    void conflictIsReportedAfterMaxAttempts() {
+        assertThrows(ConflictException.class, () -> retry.execute(() -> {
+            attempts.incrementAndGet();
+            throw new OptimisticLockingFailureException("Версия изменилась");
+        }));
+        assertEquals(MAX_ATTEMPTS, attempts.get());
+    }
+
+    @Test
+    void operationSucceedsOnRetry() {
+        String result = retry.execute(() -> {
+            if (attempts.incrementAndGet() < MAX_ATTEMPTS) {
+                throw new OptimisticLockingFailureException("Версия изменилась");
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(MAX_ATTEMPTS, attempts.get());
+    }
+
+    @Test
+    void otherErrorsAreNotRetried() {
+        assertThrows(NotFoundException.class, () -> retry.execute(() -> {
+            attempts.incrementAndGet();
+            throw new NotFoundException("Вещь не найдена");
+        }));
+        assertEquals(1, attempts.get());
+    }
+}
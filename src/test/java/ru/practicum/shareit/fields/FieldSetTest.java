@@ -0,0 +1,63 @@
+package ru.practicum.shareit.fields;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FieldSetTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void emptySpecIncludesEverything() {
+        assertSame(FieldSet.ALL, FieldSet.parse(null));
+        assertSame(FieldSet.ALL, FieldSet.parse(" "));
+        assertTrue(FieldSet.parse("").includes("anything"));
+    }
+
+    @Test
+    void parsesTopLevelAndNestedFields() {
+        FieldSet fields = FieldSet.parse(" id , booker.name,item ,, booker.email");
+
+        assertTrue(fields.includes("id"));
+        assertTrue(fields.includes("booker"));
+        assertTrue(fields.includes("item"));
+        assertFalse(fields.includes("status"));
+        assertTrue(fields.nested("item").isAll());
+        assertTrue(fields.nested("booker").includes("name"));
+        assertTrue(fields.nested("booker").includes("email"));
+        assertFalse(fields.nested("booker").includes("id"));
+        assertFalse(fields.nested("status").includes("id"));
+        assertTrue(fields.includesAny("status", "id"));
+    }
+
+    @Test
+    void wholeFieldWinsOverNestedPath() {
+        FieldSet fields = FieldSet.parse("booker.name,booker");
+
+        assertTrue(fields.nested("booker").isAll());
+    }
+
+    @Test
+    void prunesObjectsAndArrays() throws Exception {
+        JsonNode node = objectMapper.readTree("[{\"id\":1,\"status\":\"WAITING\","
+                + "\"booker\":{\"id\":2,\"name\":\"a\",\"email\":\"a@a\"},\"item\":{\"id\":3,\"name\":\"b\"}},"
+                + "{\"id\":4,\"status\":\"APPROVED\",\"booker\":null}]");
+
+        FieldSet.parse("id,booker.name,item").prune(node);
+
+        assertEquals(objectMapper.readTree("[{\"id\":1,\"booker\":{\"name\":\"a\"},\"item\":{\"id\":3,\"name\":\"b\"}},"
+                + "{\"id\":4,\"booker\":null}]"), node);
+    }
+
+    @Test
+    void allLeavesNodeUntouched() throws Exception {
+        JsonNode node = objectMapper.readTree("{\"id\":1,\"name\":\"a\"}");
+
+        assertEquals(objectMapper.readTree("{\"id\":1,\"name\":\"a\"}"), FieldSet.ALL.prune(node));
+    }
+}
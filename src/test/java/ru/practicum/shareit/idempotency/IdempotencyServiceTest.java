@@ -0,0 +1,173 @@
+package ru.practicum.shareit.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.exeptions.ConflictException;
+import ru.practicum.shareit.exeptions.UnprocessableEntityException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyServiceTest {
+    private static final String OPERATION = "createItem";
+    private static final Long USER_ID = 1L;
+    private static final String KEY = "key-1";
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final IdempotencyService service = service(Duration.ofSeconds(5));
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void repeatedRequestReplaysStoredResponse() {
+        Response first = execute(service, KEY, new Request("drill"), this::created);
+        Response second = execute(service, KEY, new Request("drill"), this::created);
+
+        assertEquals(first, second);
+        assertEquals(1, calls.get(), "Повтор не должен выполнять действие");
+    }
+
+    @Test
+    void differentKeysAndUsersAreIndependent() {
+        execute(service, KEY, new Request("drill"), this::created);
+        execute(service, "key-2", new Request("drill"), this::created);
+        service.execute(OPERATION, 2L, KEY, new Request("drill"), Response.class, this::created);
+
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void requestWithoutKeyIsExecutedEveryTime() {
+        execute(service, null, new Request("drill"), this::created);
+        execute(service, " ", new Request("drill"), this::created);
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void concurrentDuplicateWaitsForOriginal() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Response> original = executor.submit(() -> execute(service, KEY, new Request("drill"), () -> {
+            started.countDown();
+            await(release);
+            return created();
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        Future<Response> duplicate = executor.submit(() -> execute(service, KEY, new Request("drill"), this::created));
+        Thread.sleep(100);
+        assertFalse(duplicate.isDone(), "Повтор должен ждать завершения оригинала");
+
+        release.countDown();
+        assertEquals(original.get(5, TimeUnit.SECONDS), duplicate.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get(), "Действие должно выполниться один раз");
+    }
+
+    @Test
+    void concurrentDuplicateGetsConflictWhenOriginalTakesTooLong() throws Exception {
+        IdempotencyService service = service(Duration.ofMillis(50));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Response> original = executor.submit(() -> execute(service, KEY, new Request("drill"), () -> {
+            started.countDown();
+            await(release);
+            return created();
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertThrows(ConflictException.class,
+                () -> execute(service, KEY, new Request("drill"), this::created));
+
+        release.countDown();
+        original.get(5, TimeUnit.SECONDS);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void failedRequestIsNotStored() {
+        assertThrows(IllegalStateException.class, () -> execute(service, KEY, new Request("drill"), () -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("Сбой");
+        }));
+
+        Response retried = execute(service, KEY, new Request("drill"), this::created);
+
+        assertEquals(2, retried.id(), "После ошибки повтор должен выполниться заново");
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void sameKeyWithDifferentBodyIsRejected() {
+        execute(service, KEY, new Request("drill"), this::created);
+
+        assertThrows(UnprocessableEntityException.class,
+                () -> execute(service, KEY, new Request("saw"), this::created));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void sameKeyWithDifferentBodyIsRejectedWhileOriginalIsInFlight() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Response> original = executor.submit(() -> execute(service, KEY, new Request("drill"), () -> {
+            started.countDown();
+            await(release);
+            return created();
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Response> mismatched = CompletableFuture.supplyAsync(
+                () -> execute(service, KEY, new Request("saw"), this::created), executor);
+        Exception error = assertThrows(Exception.class, () -> mismatched.get(1, TimeUnit.SECONDS));
+
+        release.countDown();
+        original.get(5, TimeUnit.SECONDS);
+        assertTrue(error.getCause() instanceof UnprocessableEntityException, "Ожидался 422, получено " + error);
+        assertEquals(1, calls.get());
+    }
+
+    private IdempotencyService service(Duration waitTimeout) {
+        return new IdempotencyService(new InMemoryIdempotencyStore(100), new ObjectMapper(),
+                Duration.ofHours(1), waitTimeout);
+    }
+
+    private Response execute(IdempotencyService service, String key, Request request, Supplier<Response> action) {
+        return service.execute(OPERATION, USER_ID, key, request, Response.class, action);
+    }
+
+    private Response created() {
+        return new Response(calls.incrementAndGet(), "drill");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    record Request(String name) {
+    }
+
+    record Response(long id, String name) {
+    }
+}
@@ -0,0 +1,88 @@
+package ru.practicum.shareit.item.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.item.ItemMapper;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.model.Item;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ItemSearchCacheTest {
+    private static final String[] WORDS = {"drill", "Drill", "saw", "hammer", "ladder", "tent", "bike", "kayak",
+            "ab", "a", "Дрель", "пила", "палатка"};
+    private static final String[] QUERIES = {"drill", "DRI", "ill", "saw", "ham", "ladder", "tent", "bik", "kayak",
+            "a", "ab", "r", "дрель", "пил", "drill saw", "l s", "нет"};
+
+    private final List<Item> items = new ArrayList<>();
+    private final Random random = new Random(42);
+
+    @Test
+    void cachedResultsMatchUncachedUnderRandomMutations() {
+        ItemSearchCache cache = new ItemSearchCache(new SimpleMeterRegistry(), 8, Duration.ofHours(1));
+        for (int i = 0; i < 20; i++) {
+            createItem(cache);
+        }
+
+        for (int step = 0; step < 20_000; step++) {
+            int action = random.nextInt(10);
+            if (action == 0) {
+                createItem(cache);
+            } else if (action < 3) {
+                updateItem(cache);
+            } else {
+                String query = QUERIES[random.nextInt(QUERIES.length)];
+                assertEquals(search(query), cache.get(query, () -> search(query)),
+                        "Шаг " + step + ", запрос " + query);
+            }
+        }
+    }
+
+    private void createItem(ItemSearchCache cache) {
+        Item item = new Item();
+        item.setId((long) items.size() + 1);
+        item.setName(randomText());
+        item.setDescription(randomText());
+        item.setAvailable(random.nextBoolean());
+        items.add(item);
+        cache.invalidate(null, ItemSearchCache.snapshot(item));
+    }
+
+    private void updateItem(ItemSearchCache cache) {
+        Item item = items.get(random.nextInt(items.size()));
+        ItemSearchCache.Snapshot before = ItemSearchCache.snapshot(item);
+        switch (random.nextInt(3)) {
+            case 0 -> item.setName(randomText());
+            case 1 -> item.setDescription(randomText());
+            default -> item.setAvailable(!item.getAvailable());
+        }
+        cache.invalidate(before, ItemSearchCache.snapshot(item));
+    }
+
+    private String randomText() {
+        int words = 1 + random.nextInt(3);
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < words; i++) {
+            result.add(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return String.join(" ", result);
+    }
+
+    // Повторяет условие ItemRepository.searchAvailableItems.
+    private List<ItemDto> search(String text) {
+        String query = text.toLowerCase(Locale.ROOT);
+        return items.stream()
+                .filter(Item::getAvailable)
+                .filter(item -> item.getName().toLowerCase(Locale.ROOT).contains(query)
+                        || item.getDescription().toLowerCase(Locale.ROOT).contains(query))
+                .map(ItemMapper::toItemDto)
+                .collect(Collectors.toList());
+    }
+}
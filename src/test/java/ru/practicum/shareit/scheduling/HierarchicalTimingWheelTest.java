@@ -0,0 +1,90 @@
+package ru.practicum.shareit.scheduling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HierarchicalTimingWheelTest {
+    private static final long TICK = 10;
+
+    @Test
+    void firesTaskInTickContainingDeadline() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK, 8, 1000);
+        wheel.schedule(1025, () -> { });
+
+        assertTrue(wheel.advance(1019).isEmpty());
+        assertEquals(1, wheel.advance(1020).size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void overdueTaskIsScheduledForNextTick() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK, 8, 1000);
+        wheel.schedule(900, () -> { });
+
+        assertEquals(1, wheel.size());
+        assertTrue(wheel.advance(1009).isEmpty());
+        assertEquals(1, wheel.advance(1010).size());
+    }
+
+    @Test
+    void cancelledTaskNeverFires() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK, 8, 1000);
+        HierarchicalTimingWheel.Timeout timeout = wheel.schedule(1_000_000, () -> { });
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertEquals(0, wheel.size());
+        assertTrue(wheel.advance(2_000_000).isEmpty());
+    }
+
+    @Test
+    void matchesReferenceUnderRandomOperations() {
+        Random random = new Random(7);
+        long now = 1000;
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK, 8, now);
+        // Задача срабатывает в первом advance, где now не меньше начала тика её срока.
+        Map<Integer, Long> pending = new HashMap<>();
+        Map<Integer, HierarchicalTimingWheel.Timeout> handles = new HashMap<>();
+        Set<Integer> fired = new HashSet<>();
+
+        for (int step = 0; step < 50_000; step++) {
+            int action = random.nextInt(10);
+            if (action < 5) {
+                int id = step;
+                long deadline = now - 20 + random.nextInt(random.nextBoolean() ? 100 : 20_000);
+                long tickStart = now - Math.floorMod(now, TICK);
+                long effective = Math.max(deadline, tickStart + TICK);
+                pending.put(id, effective - Math.floorMod(effective, TICK));
+                handles.put(id, wheel.schedule(deadline, () -> fired.add(id)));
+            } else if (action < 7 && !handles.isEmpty()) {
+                List<Integer> ids = new ArrayList<>(handles.keySet());
+                int id = ids.get(random.nextInt(ids.size()));
+                assertEquals(pending.remove(id) != null, handles.remove(id).cancel(), "Шаг " + step);
+            } else {
+                now += random.nextInt(random.nextBoolean() ? 15 : 400);
+                fired.clear();
+                wheel.advance(now).forEach(Runnable::run);
+                Set<Integer> expected = new HashSet<>();
+                for (Map.Entry<Integer, Long> entry : pending.entrySet()) {
+                    if (entry.getValue() <= now) {
+                        expected.add(entry.getKey());
+                    }
+                }
+                assertEquals(expected, fired, "Шаг " + step);
+                expected.forEach(pending::remove);
+            }
+            assertEquals(pending.size(), wheel.size(), "Шаг " + step);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ru.practicum.shareit.sharding;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class ShardRouterTest {
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    @Test
+    void idsAreSpreadOverShardsInTurn() {
+        for (int shardCount = 1; shardCount <= 5; shardCount++) {
+            ShardRouter router = router(shardCount);
+            for (long id = 1; id <= 50; id++) {
+                assertEquals((int) ((id - 1) % shardCount), router.shardOfId(id),
+                        String.format("Шардов %d, id %d", shardCount, id));
+            }
+        }
+    }
+
+    @Test
+    void idsGeneratedOnShardStayOnIt() {
+        for (int shardCount = 1; shardCount <= 5; shardCount++) {
+            ShardRouter router = router(shardCount);
+            for (int shard = 0; shard < shardCount; shard++) {
+                long firstId = ShardSchemaInitializer.nextIdOnShard(17, shard, shardCount);
+                for (int step = 0; step < 10; step++) {
+                    assertEquals(shard, router.shardOfId(firstId + (long) step * shardCount));
+                }
+            }
+        }
+    }
+
+    @Test
+    void ownersAreSpreadOverShards() {
+        for (int shardCount = 1; shardCount <= 5; shardCount++) {
+            ShardRouter router = router(shardCount);
+            for (long ownerId = 1; ownerId <= 50; ownerId++) {
+                int shard = router.shardOfOwner(ownerId);
+                assertEquals((int) (ownerId % shardCount), shard);
+                assertEquals(shard, router.shardOfOwner(ownerId), "Шард владельца должен быть постоянным");
+            }
+        }
+    }
+
+    @Test
+    void withoutShardingEverythingIsOnSingleShard() {
+        ShardRouter router = new ShardRouter(transactionManager, mock(DataSource.class), false,
+                List.of("jdbc:a", "jdbc:b"));
+
+        assertEquals(1, router.shardCount());
+        assertEquals(0, router.shardOfId(7L));
+        assertEquals(0, router.shardOfOwner(8L));
+    }
+
+    @Test
+    void mismatchBetweenSwitchAndDataSourceIsRejected() {
+        assertThrows(IllegalStateException.class,
+                () -> new ShardRouter(transactionManager, mock(DataSource.class), true, List.of("jdbc:a")));
+        assertThrows(IllegalStateException.class,
+                () -> new ShardRouter(transactionManager, new ShardRoutingDataSource(), false, List.of()));
+    }
+
+    @Test
+    void queryAllShardsRunsQueryOnEveryShardInOrder() {
+        ShardRouter router = router(3);
+        try {
+            List<Integer> shards = router.queryAllShards(() -> Collections.singletonList(ShardContext.current()));
+
+            assertEquals(List.of(0, 1, 2), shards);
+            assertNull(ShardContext.current(), "Шард вызывающего потока не должен меняться");
+        } finally {
+            router.shutdown();
+        }
+    }
+
+    @Test
+    void queryShardsOfPassesEachShardOnlyItsIds() {
+        ShardRouter router = router(3);
+        try {
+            List<String> rows = router.queryShardsOf(List.of(1L, 2L, 4L, 7L),
+                    ids -> List.of(ShardContext.current() + ":" + ids));
+
+            assertEquals(List.of("0:[1, 4, 7]", "1:[2]"), rows);
+        } finally {
+            router.shutdown();
+        }
+    }
+
+    private ShardRouter router(int shardCount) {
+        List<String> urls = IntStream.range(0, shardCount)
+                .mapToObj(shard -> "jdbc:shard" + shard)
+                .collect(Collectors.toList());
+        return new ShardRouter(transactionManager, new ShardRoutingDataSource(), true, urls);
+    }
+}
@@ -0,0 +1,33 @@
+package ru.practicum.shareit.sharding;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardSchemaInitializerTest {
+
+    @Test
+    void nextIdIsSmallestFreeIdOfShard() {
+        for (int shardCount = 1; shardCount <= 5; shardCount++) {
+            for (int shard = 0; shard < shardCount; shard++) {
+                for (long maxId = 0; maxId <= 50; maxId++) {
+                    long nextId = ShardSchemaInitializer.nextIdOnShard(maxId, shard, shardCount);
+                    String context = String.format("Шардов %d, шард %d, max(id) %d", shardCount, shard, maxId);
+
+                    assertTrue(nextId > maxId, context);
+                    assertTrue(nextId - shardCount <= maxId, context + ": пропущен свободный id " + nextId);
+                    assertEquals(shard, Math.floorMod(nextId - 1, shardCount), context);
+                }
+            }
+        }
+    }
+
+    @Test
+    void firstIdsOfShardsFollowEachOther() {
+        int shardCount = 4;
+        for (int shard = 0; shard < shardCount; shard++) {
+            assertEquals(shard + 1, ShardSchemaInitializer.nextIdOnShard(0, shard, shardCount));
+        }
+    }
+}
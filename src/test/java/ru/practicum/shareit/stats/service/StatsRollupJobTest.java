@@ -0,0 +1,180 @@
+package ru.practicum.shareit.stats.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.BookingStatus;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.scheduling.JobLeaseRepository;
+import ru.practicum.shareit.scheduling.JobWatermarkRepository;
+import ru.practicum.shareit.sharding.ShardRouter;
+import ru.practicum.shareit.stats.model.ItemDailyStats;
+import ru.practicum.shareit.stats.repository.ItemDailyStatsRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+// Задача ведёт собственные транзакции, поэтому транзакция теста отключена. Маленький batch-size
+// заставляет и инкрементальный режим, и пересчёт проходить через несколько пачек.
+@DataJpaTest(properties = {"shareit.stats.rollup.batch-size=2", "shareit.stats.rollup.safety-lag=PT5M"})
+@Import({StatsRollupJob.class, JobLeaseRepository.class, JobWatermarkRepository.class, ShardRouter.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StatsRollupJobTest {
+    private static final BookingStatus[] STATUSES = {BookingStatus.APPROVED, BookingStatus.APPROVED,
+            BookingStatus.REJECTED, BookingStatus.WAITING};
+
+    @Autowired
+    private StatsRollupJob job;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemDailyStatsRepository itemDailyStatsRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Random random = new Random(42);
+    private final LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+    private User owner;
+    private User booker;
+    private final List<Item> items = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(user("owner"));
+        booker = userRepository.save(user("booker"));
+        for (int i = 0; i < 3; i++) {
+            Item item = new Item();
+            item.setName("Вещь " + i);
+            item.setDescription("Описание " + i);
+            item.setAvailable(true);
+            item.setOwner(owner);
+            items.add(itemRepository.save(item));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from item_daily_stats");
+        jdbcTemplate.update("delete from job_watermarks");
+        jdbcTemplate.update("delete from job_leases");
+        bookingRepository.deleteAll();
+        itemRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void bookingIsSplitByDaysAndDecisionsCountOnDecisionDate() {
+        Item item = items.get(0);
+        booking(item, LocalDateTime.of(2026, 3, 1, 22, 0), LocalDateTime.of(2026, 3, 3, 1, 30),
+                BookingStatus.APPROVED, LocalDateTime.of(2026, 2, 27, 10, 0));
+        booking(item, LocalDateTime.of(2026, 3, 5, 12, 0), LocalDateTime.of(2026, 3, 6, 12, 0),
+                BookingStatus.REJECTED, LocalDateTime.of(2026, 2, 28, 9, 0));
+        booking(item, LocalDateTime.of(2026, 3, 7, 12, 0), LocalDateTime.of(2026, 3, 8, 12, 0),
+                BookingStatus.WAITING, null);
+
+        job.rollUp();
+
+        List<ItemDailyStats> expected = List.of(
+                stats(item, LocalDate.of(2026, 2, 27), 0, 1, 0, 3600, 1),
+                stats(item, LocalDate.of(2026, 2, 28), 0, 0, 1, 0, 0),
+                stats(item, LocalDate.of(2026, 3, 1), 120, 0, 0, 0, 0),
+                stats(item, LocalDate.of(2026, 3, 2), 1440, 0, 0, 0, 0),
+                stats(item, LocalDate.of(2026, 3, 3), 90, 0, 0, 0, 0));
+        assertEquals(expected, snapshot());
+
+        job.backfill();
+        assertEquals(expected, snapshot(), "Пересчёт должен дать те же агрегаты");
+    }
+
+    @Test
+    void incrementalRollupMatchesBackfill() {
+        // Решения приходят волнами с растущим decided_at, часть решений принята в одну и ту же секунду.
+        randomBookings(20, now.minusDays(30));
+        job.rollUp();
+        randomBookings(20, now.minusDays(10));
+        Booking recent = booking(items.get(0), now.plusDays(1), now.plusDays(2), BookingStatus.APPROVED,
+                now.minusMinutes(1));
+        job.rollUp();
+
+        List<ItemDailyStats> incremental = snapshot();
+        job.backfill();
+        assertEquals(incremental, snapshot(), "Решение моложе safety-lag не должно учитываться ни одним режимом");
+
+        // Время прошло: решение стало старше safety-lag и лежит после позиции, сохранённой пересчётом.
+        recent.setDecidedAt(now.minusMinutes(10));
+        bookingRepository.save(recent);
+        job.rollUp();
+
+        List<ItemDailyStats> afterLag = snapshot();
+        assertNotEquals(incremental, afterLag);
+        job.backfill();
+        assertEquals(afterLag, snapshot(), "Пересчёт должен дать те же агрегаты, что и инкрементальный режим");
+
+        job.rollUp();
+        assertEquals(afterLag, snapshot(), "Повторный запуск без новых решений не должен менять агрегаты");
+    }
+
+    private void randomBookings(int count, LocalDateTime decidedFrom) {
+        for (int i = 0; i < count; i++) {
+            LocalDateTime start = now.minusDays(20).plusMinutes(random.nextInt(30 * 24 * 60));
+            LocalDateTime end = start.plusMinutes(30 + random.nextInt(3 * 24 * 60));
+            BookingStatus status = STATUSES[random.nextInt(STATUSES.length)];
+            LocalDateTime decidedAt = status == BookingStatus.WAITING
+                    ? null : decidedFrom.plusHours(random.nextInt(48));
+            booking(items.get(random.nextInt(items.size())), start, end, status, decidedAt);
+        }
+    }
+
+    private Booking booking(Item item, LocalDateTime start, LocalDateTime end, BookingStatus status,
+                            LocalDateTime decidedAt) {
+        return bookingRepository.save(new Booking(null, start, end, item, booker, status, decidedAt, null));
+    }
+
+    private ItemDailyStats stats(Item item, LocalDate date, long bookedMinutes, long approvals, long rejections,
+                                 long leadTimeMinutesSum, long leadTimeSamples) {
+        return new ItemDailyStats(item.getId(), date, owner.getId(), bookedMinutes, approvals, rejections,
+                leadTimeMinutesSum, leadTimeSamples);
+    }
+
+    private List<ItemDailyStats> snapshot() {
+        return itemDailyStatsRepository.findAll().stream()
+                .sorted(Comparator.comparing(ItemDailyStats::getItemId).thenComparing(ItemDailyStats::getStatsDate))
+                .collect(Collectors.toList());
+    }
+
+    private static User user(String name) {
+        User user = new User();
+        user.setName(name);
+        user.setEmail(name + "@example.com");
+        return user;
+    }
+}
@@ -0,0 +1,43 @@
+#!/usr/bin/env bash
+# Сравнение холодного старта обычной сборки и сборки с AOT и CDS-архивом.
+# Нужна запущенная БД (docker compose up -d). Для каждого режима выводит время до первого
+# успешного ответа /actuator/health и RSS процесса в этот момент.
+set -euo pipefail
+
+RUNS=${RUNS:-5}
+PORT=${PORT:-8080}
+# Actuator слушает отдельный порт management.server.port на 127.0.0.1.
+MGMT_PORT=${MGMT_PORT:-8081}
+JAR=shareit-0.0.1-SNAPSHOT.jar
+
+measure() {
+  local mode=$1
+  shift
+  for ((i = 1; i <= RUNS; i++)); do
+    local started
+    started=$(date +%s%N)
+    "$@" --server.port="$PORT" --management.server.port="$MGMT_PORT" > /dev/null 2>&1 &
+    local pid=$!
+    until curl -sf "http://127.0.0.1:$MGMT_PORT/actuator/health" > /dev/null; do
+      if ! kill -0 "$pid" 2> /dev/null; then
+        echo "$mode run=$i: приложение завершилось до готовности" >&2
+        exit 1
+      fi
+      sleep 0.02
+    done
+    local elapsed=$(( ($(date +%s%N) - started) / 1000000 ))
+    local rss
+    rss=$(awk '/VmRSS/ {print $2}' "/proc/$pid/status")
+    echo "$mode run=$i time_to_first_request_ms=$elapsed rss_kb=$rss"
+    kill "$pid"
+    wait "$pid" 2> /dev/null || true
+  done
+}
+
+mvn -B -q -DskipTests package
+cp "target/$JAR" "target/standard-$JAR"
+mvn -B -q -DskipTests -Pstartup package
+
+measure standard java -jar "target/standard-$JAR"
+measure optimized java -XX:SharedArchiveFile=target/application/application.jsa -Dspring.aot.enabled=true \
+  -jar "target/application/$JAR"